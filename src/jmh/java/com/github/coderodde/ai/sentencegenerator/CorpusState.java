@@ -0,0 +1,46 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A Zipf corpus shared by the benchmarks, together with the outputs of each
+ * pipeline stage so that every stage can be measured in isolation.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+    
+    private static final long SEED = 13L;
+    
+    @Param({ "20000" })
+    public int numberOfSentences;
+    
+    @Param({ "1000", "50000" })
+    public int vocabularySize;
+    
+    @Param({ "1.1" })
+    public double exponent;
+    
+    String text;
+    Path path;
+    List<String> sentences;
+    List<List<String>> words;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        text = ZipfCorpus.generate(numberOfSentences, 
+                                   vocabularySize, 
+                                   exponent, 
+                                   SEED);
+        
+        path = ZipfCorpus.write(text);
+        sentences = SentenceProducer.splitEntireTextToSentences(text);
+        words = WordProvider.getWords(sentences);
+    }
+}
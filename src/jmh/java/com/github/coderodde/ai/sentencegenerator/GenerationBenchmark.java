@@ -0,0 +1,83 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end sentence generation with each of the engines built
+ * from the same corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+    
+    private static final long SEED = 13L;
+    private static final int MAXIMUM_SENTENCE_LENGTH = 40;
+    private static final int BATCH_SIZE = 10_000;
+    
+    @Param({ "graph", "compact", "ngram3" })
+    public String engine;
+    
+    private SentenceSampler sampler;
+    private BatchSentenceGenerator batchSentenceGenerator;
+    private SplittableRandom random;
+    
+    @Setup(Level.Trial)
+    public void setUp(CorpusState corpus) {
+        sampler = switch (engine) {
+            case "graph" -> 
+                    new WordGraphSentenceSampler(
+                            WordGraphBuilder.buildGraph(corpus.words));
+            
+            case "compact" -> 
+                    new WordGraphSentenceSampler(
+                            WordGraphBuilder.buildCompactGraph(corpus.words));
+            
+            case "ngram3" -> {
+                NGramModel.Builder builder = new NGramModel.Builder(3);
+                builder.addSentences(corpus.words);
+                yield builder.build();
+            }
+            
+            default -> throw new IllegalArgumentException(
+                    "Unknown engine \"" + engine + "\".");
+        };
+        
+        batchSentenceGenerator = 
+                new BatchSentenceGenerator(
+                        sampler, 
+                        Runtime.getRuntime().availableProcessors());
+        
+        random = new SplittableRandom(SEED);
+    }
+    
+    @Benchmark
+    public List<String> sampleSentence() {
+        return sampler.sampleSentence(MAXIMUM_SENTENCE_LENGTH, random);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<List<String>> generateBatch() {
+        return batchSentenceGenerator.generate(BATCH_SIZE, 
+                                               MAXIMUM_SENTENCE_LENGTH, 
+                                               SEED);
+    }
+}
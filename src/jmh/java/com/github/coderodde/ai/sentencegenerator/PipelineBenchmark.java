@@ -0,0 +1,59 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the preprocessing stages, from the raw text to the word graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    
+    @Benchmark
+    public List<String> splitSentences(CorpusState corpus) {
+        return SentenceProducer.splitEntireTextToSentences(corpus.text);
+    }
+    
+    @Benchmark
+    public void streamSentences(CorpusState corpus, Blackhole blackhole) 
+            throws IOException {
+        new SentenceProducer(corpus.path.toString())
+                .forEachSentence(blackhole::consume);
+    }
+    
+    @Benchmark
+    public List<List<String>> tokenize(CorpusState corpus) {
+        return WordProvider.getWords(corpus.sentences);
+    }
+    
+    @Benchmark
+    public WordGraph buildGraph(CorpusState corpus) {
+        return WordGraphBuilder.buildGraph(corpus.words);
+    }
+    
+    @Benchmark
+    public WordGraph buildCompactGraph(CorpusState corpus) {
+        return WordGraphBuilder.buildCompactGraph(corpus.words);
+    }
+    
+    @Benchmark
+    public WordGraph buildGraphInParallel(CorpusState corpus) {
+        return ParallelWordGraphBuilder
+                .countWords(corpus.text, 
+                            Runtime.getRuntime().availableProcessors())
+                .buildCompact();
+    }
+}
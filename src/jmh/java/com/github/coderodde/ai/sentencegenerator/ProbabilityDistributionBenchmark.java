@@ -0,0 +1,85 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building and sampling a node distribution of a given degree. The
+ * weights follow Zipf's law, like the arc weights of a real word graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProbabilityDistributionBenchmark {
+    
+    private static final long SEED = 13L;
+    
+    @Param({ "4", "64", "1024" })
+    public int degree;
+    
+    private DirectedWordGraphNode[] elements;
+    private double[] weights;
+    private BinaryTreeProbabilityDistribution treeDistribution;
+    private AliasProbabilityDistribution aliasDistribution;
+    private SplittableRandom random;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = new DirectedWordGraphNode[degree];
+        weights = new double[degree];
+        treeDistribution = 
+                new BinaryTreeProbabilityDistribution(new Random(SEED));
+        
+        for (int i = 0; i < degree; i++) {
+            elements[i] = new DirectedWordGraphNode("w" + i);
+            weights[i] = Math.max(1.0, Math.floor(1000.0 / (i + 1)));
+            treeDistribution.addElement(elements[i], weights[i]);
+        }
+        
+        aliasDistribution = treeDistribution.freeze();
+        random = new SplittableRandom(SEED);
+    }
+    
+    @Benchmark
+    public BinaryTreeProbabilityDistribution addElements() {
+        BinaryTreeProbabilityDistribution distribution =
+                new BinaryTreeProbabilityDistribution();
+        
+        for (int i = 0; i < degree; i++) {
+            distribution.addElement(elements[i], weights[i]);
+        }
+        
+        return distribution;
+    }
+    
+    @Benchmark
+    public AliasProbabilityDistribution freeze() {
+        return treeDistribution.freeze();
+    }
+    
+    @Benchmark
+    public DirectedWordGraphNode sampleTree() {
+        return treeDistribution.sampleElement();
+    }
+    
+    @Benchmark
+    public DirectedWordGraphNode sampleAlias() {
+        return aliasDistribution.sampleElement(random);
+    }
+}
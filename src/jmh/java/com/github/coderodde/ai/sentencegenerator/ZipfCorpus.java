@@ -0,0 +1,70 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic corpora whose word frequencies follow Zipf's law, as
+ * in natural language text. The word of rank {@code r} is {@code "w" + r}
+ * and has the probability proportional to {@code 1 / (r + 1)^s}. The same
+ * seed always produces the same corpus.
+ */
+final class ZipfCorpus {
+    
+    private static final int MINIMUM_SENTENCE_LENGTH = 3;
+    private static final int MAXIMUM_SENTENCE_LENGTH = 30;
+    private static final char[] TERMINATORS = { '.', '.', '.', '?', '!' };
+    
+    public static String generate(int numberOfSentences,
+                                  int vocabularySize,
+                                  double exponent,
+                                  long seed) {
+        double[] cumulativeWeights = new double[vocabularySize];
+        double totalWeight = 0.0;
+        
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            totalWeight += 1.0 / Math.pow(rank + 1, exponent);
+            cumulativeWeights[rank] = totalWeight;
+        }
+        
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder stringBuilder = new StringBuilder();
+        
+        for (int i = 0; i < numberOfSentences; i++) {
+            int sentenceLength = 
+                    random.nextInt(MINIMUM_SENTENCE_LENGTH, 
+                                   MAXIMUM_SENTENCE_LENGTH + 1);
+            
+            for (int j = 0; j < sentenceLength; j++) {
+                int rank = Arrays.binarySearch(
+                        cumulativeWeights, 
+                        random.nextDouble() * totalWeight);
+                
+                if (rank < 0) {
+                    rank = Math.min(-rank - 1, vocabularySize - 1);
+                }
+                
+                if (j > 0) {
+                    stringBuilder.append(' ');
+                }
+                
+                stringBuilder.append('w').append(rank);
+            }
+            
+            stringBuilder.append(TERMINATORS[random.nextInt(
+                                                TERMINATORS.length)])
+                         .append(i % 8 == 7 ? '\n' : ' ');
+        }
+        
+        return stringBuilder.toString();
+    }
+    
+    public static Path write(String text) throws IOException {
+        Path path = Files.createTempFile("zipf-corpus-", ".txt");
+        path.toFile().deleteOnExit();
+        return Files.writeString(path, text);
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+final class AliasProbabilityDistribution {
+    
+    private final DirectedWordGraphNode[] elements;
+    private final double[] weights;
+    private final double[] probabilities;
+    private final int[] aliases;
+    private final double totalWeight;
+    private final Random random;
+    
+    public AliasProbabilityDistribution(DirectedWordGraphNode[] elements,
+                                        double[] weights,
+                                        Random random) {
+        if (elements.length != weights.length) {
+            throw new IllegalArgumentException(
+                    "Element and weight array lengths differ: "
+                            + elements.length
+                            + " vs. "
+                            + weights.length
+                            + ".");
+        }
+        
+        this.elements = elements;
+        this.weights = weights;
+        this.probabilities = new double[elements.length];
+        this.aliases = new int[elements.length];
+        this.random = random;
+        
+        double totalWeight = 0.0;
+        
+        for (double weight : weights) {
+            totalWeight += weight;
+        }
+        
+        this.totalWeight = totalWeight;
+        buildAliasTable(weights,
+                        0,
+                        weights.length,
+                        probabilities,
+                        aliases);
+    }
+    
+    public DirectedWordGraphNode sampleElement() {
+        return sampleElement(random);
+    }
+    
+    public DirectedWordGraphNode sampleElement(RandomGenerator random) {
+        checkNotEmpty(elements.length);
+        return elements[sampleIndex(probabilities,
+                                    aliases,
+                                    0,
+                                    elements.length,
+                                    random.nextDouble())];
+    }
+    
+    public DirectedWordGraphNode getElement(int index) {
+        return elements[index];
+    }
+    
+    public double getWeight(int index) {
+        return weights[index];
+    }
+    
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+    
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+    
+    public int size() {
+        return elements.length;
+    }
+    
+    // Builds the Vose alias table of weights[fromIndex .. toIndex - 1] into the
+    // same range of 'probabilities' and 'aliases'. Aliases are row-relative.
+    static void buildAliasTable(double[] weights,
+                                int fromIndex,
+                                int toIndex,
+                                double[] probabilities,
+                                int[] aliases) {
+        int size = toIndex - fromIndex;
+        
+        if (size == 0) {
+            return;
+        }
+        
+        double totalWeight = 0.0;
+        
+        for (int i = fromIndex; i < toIndex; i++) {
+            totalWeight += weights[i];
+        }
+        
+        // The small and large work lists share one array: small indices grow
+        // from the left, large indices from the right.
+        int[] workList = new int[size];
+        int smallSize = 0;
+        int largeStart = size;
+        
+        for (int i = 0; i < size; i++) {
+            double scaledProbability = weights[fromIndex + i] * size
+                                                              / totalWeight;
+            probabilities[fromIndex + i] = scaledProbability;
+            
+            if (scaledProbability < 1.0) {
+                workList[smallSize++] = i;
+            } else {
+                workList[--largeStart] = i;
+            }
+        }
+        
+        while (smallSize > 0 && largeStart < size) {
+            int small = workList[--smallSize];
+            int large = workList[largeStart];
+            
+            aliases[fromIndex + small] = large;
+            probabilities[fromIndex + large] =
+                    probabilities[fromIndex + large]
+                  + probabilities[fromIndex + small]
+                  - 1.0;
+            
+            if (probabilities[fromIndex + large] < 1.0) {
+                largeStart++;
+                workList[smallSize++] = large;
+            }
+        }
+        
+        // Whatever remains is 1.0 up to the rounding errors.
+        while (largeStart < size) {
+            int large = workList[largeStart++];
+            probabilities[fromIndex + large] = 1.0;
+            aliases[fromIndex + large] = large;
+        }
+        
+        while (smallSize > 0) {
+            int small = workList[--smallSize];
+            probabilities[fromIndex + small] = 1.0;
+            aliases[fromIndex + small] = small;
+        }
+    }
+    
+    // Returns a row-relative index sampled with a single uniform variate 'u'.
+    static int sampleIndex(double[] probabilities,
+                           int[] aliases,
+                           int fromIndex,
+                           int toIndex,
+                           double u) {
+        int size = toIndex - fromIndex;
+        double scaled = u * size;
+        int index = (int) scaled;
+        
+        if (index == size) {
+            // Guard against rounding up when u is very close to 1.0.
+            index--;
+        }
+        
+        if (scaled - index < probabilities[fromIndex + index]) {
+            return index;
+        }
+        
+        return aliases[fromIndex + index];
+    }
+    
+    private void checkNotEmpty(int size) {
+        if (size == 0) {
+            throw new IllegalStateException(
+                    "This probability distribution is empty.");
+        }
+    }
+}
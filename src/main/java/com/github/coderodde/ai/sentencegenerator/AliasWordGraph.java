@@ -0,0 +1,16 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+/**
+ * A word graph that keeps the alias table of every row in the order of the
+ * row, so that a row can be copied together with its table.
+ */
+interface AliasWordGraph extends WordGraph {
+    
+    double getChildProbability(int wordId, int index);
+    
+    int getChildAlias(int wordId, int index);
+    
+    double getParentProbability(int wordId, int index);
+    
+    int getParentAlias(int wordId, int index);
+}
@@ -0,0 +1,234 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples sentences around a given anchor word by walking the word graph in
+ * both directions: backwards from the anchor via the parent distributions
+ * and forwards via the child distributions.
+ * <p>
+ * A sentence that must contain the anchor also has to end with the full
+ * stop within the length limit. The forward walk only steps to children
+ * from which the full stop is still reachable in the remaining number of
+ * words, so every request is answered with one walk. The distances to the
+ * full stop are computed by a breadth-first search over the parent arcs the
+ * first time they are needed.
+ */
+final class AnchoredSentenceSampler {
+    
+    private static final String END_OF_SENTENCE = ".";
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int MAXIMUM_REJECTIONS = 16;
+    
+    private final WordGraph graph;
+    private volatile int[] distancesToEndOfSentence;
+    
+    public AnchoredSentenceSampler(WordGraph graph) {
+        this.graph = graph;
+    }
+    
+    /**
+     * Samples a sentence of at most {@code maximumSentenceLength} words that
+     * grows outwards from {@code word}. The forward walk stops at a sentence
+     * terminator, at a word without children or at a uniformly random share
+     * of the length, and the backward walk may use the rest.
+     */
+    public List<String> sampleFrom(String word,
+                                   int maximumSentenceLength,
+                                   RandomGenerator random) {
+        int anchorId = getAnchorId(word);
+        
+        // Without the split, the forward walk would use up the whole length
+        // and leave no room for the words before the anchor.
+        int maximumSuffixLength =
+                maximumSentenceLength - random.nextInt(maximumSentenceLength);
+        
+        List<String> suffix = new ArrayList<>();
+        suffix.add(graph.getWord(anchorId));
+        int wordId = anchorId;
+        
+        while (suffix.size() < maximumSuffixLength
+                && !isTerminator(graph.getWord(wordId))) {
+            wordId = graph.sampleChild(wordId, random);
+            
+            if (wordId == -1) {
+                break;
+            }
+            
+            suffix.add(graph.getWord(wordId));
+        }
+        
+        return prependPrefix(anchorId,
+                             suffix,
+                             maximumSentenceLength,
+                             random);
+    }
+    
+    /**
+     * Samples a sentence of at most {@code maximumSentenceLength} words that
+     * contains {@code word} and ends with the full stop.
+     */
+    public List<String> sampleContaining(String word,
+                                         int maximumSentenceLength,
+                                         RandomGenerator random) {
+        int anchorId = getAnchorId(word);
+        int[] distances = getDistancesToEndOfSentence();
+        
+        if (distances[anchorId] == UNREACHABLE
+                || distances[anchorId] >= maximumSentenceLength) {
+            throw new IllegalStateException(
+                    "No sentence of at most "
+                            + maximumSentenceLength
+                            + " words contains \""
+                            + word
+                            + "\" and ends with \""
+                            + END_OF_SENTENCE
+                            + "\".");
+        }
+        
+        List<String> suffix = new ArrayList<>();
+        suffix.add(graph.getWord(anchorId));
+        int wordId = anchorId;
+        
+        while (distances[wordId] != 0) {
+            // The child must leave room for the rest of its path to the end.
+            int budget = maximumSentenceLength - suffix.size() - 1;
+            wordId = sampleChildWithin(wordId, budget, distances, random);
+            suffix.add(graph.getWord(wordId));
+        }
+        
+        return prependPrefix(anchorId,
+                             suffix,
+                             maximumSentenceLength,
+                             random);
+    }
+    
+    private int getAnchorId(String word) {
+        int wordId = graph.getWordId(word);
+        
+        if (wordId == -1) {
+            throw new IllegalStateException(
+                    "\"" + word + "\": no such word.");
+        }
+        
+        return wordId;
+    }
+    
+    private List<String> prependPrefix(int anchorId,
+                                       List<String> suffix,
+                                       int maximumSentenceLength,
+                                       RandomGenerator random) {
+        List<String> sentence = new ArrayList<>();
+        int wordId = anchorId;
+        
+        while (sentence.size() + suffix.size() < maximumSentenceLength) {
+            wordId = graph.sampleParent(wordId, random);
+            
+            if (wordId == -1) {
+                break;
+            }
+            
+            sentence.add(graph.getWord(wordId));
+        }
+        
+        Collections.<String>reverse(sentence);
+        sentence.addAll(suffix);
+        return sentence;
+    }
+    
+    // Samples a child of wordId whose distance to the end of the sentence is
+    // at most budget, proportionally to the arc weights among such children.
+    private int sampleChildWithin(int wordId,
+                                  int budget,
+                                  int[] distances,
+                                  RandomGenerator random) {
+        for (int i = 0; i < MAXIMUM_REJECTIONS; i++) {
+            int childId = graph.sampleChild(wordId, random);
+            
+            if (distances[childId] <= budget) {
+                return childId;
+            }
+        }
+        
+        long totalWeight = 0L;
+        
+        for (int i = 0; i < graph.getNumberOfChildren(wordId); i++) {
+            if (distances[graph.getChild(wordId, i)] <= budget) {
+                totalWeight += graph.getChildWeight(wordId, i);
+            }
+        }
+        
+        long target = (long) (random.nextDouble() * totalWeight);
+        int childId = -1;
+        
+        for (int i = 0; i < graph.getNumberOfChildren(wordId); i++) {
+            if (distances[graph.getChild(wordId, i)] <= budget) {
+                childId = graph.getChild(wordId, i);
+                target -= graph.getChildWeight(wordId, i);
+                
+                if (target < 0L) {
+                    break;
+                }
+            }
+        }
+        
+        return childId;
+    }
+    
+    /**
+     * Returns the smallest number of arcs from every word to the full stop,
+     * or {@code Integer.MAX_VALUE} for the words that do not reach it.
+     */
+    int[] getDistancesToEndOfSentence() {
+        int[] distances = distancesToEndOfSentence;
+        
+        if (distances == null) {
+            distances = computeDistancesToEndOfSentence();
+            distancesToEndOfSentence = distances;
+        }
+        
+        return distances;
+    }
+    
+    private int[] computeDistancesToEndOfSentence() {
+        int[] distances = new int[graph.getNumberOfDistinctWords()];
+        Arrays.fill(distances, UNREACHABLE);
+        int endOfSentenceId = graph.getWordId(END_OF_SENTENCE);
+        
+        if (endOfSentenceId == -1) {
+            return distances;
+        }
+        
+        int[] queue = new int[distances.length];
+        int head = 0;
+        int tail = 0;
+        distances[endOfSentenceId] = 0;
+        queue[tail++] = endOfSentenceId;
+        
+        while (head < tail) {
+            int wordId = queue[head++];
+            
+            for (int i = 0; i < graph.getNumberOfParents(wordId); i++) {
+                int parentId = graph.getParent(wordId, i);
+                
+                if (distances[parentId] == UNREACHABLE) {
+                    distances[parentId] = distances[wordId] + 1;
+                    queue[tail++] = parentId;
+                }
+            }
+        }
+        
+        return distances;
+    }
+    
+    private static boolean isTerminator(String word) {
+        return switch (word) {
+            case ".", "?", "!" -> true;
+            default -> false;
+        };
+    }
+}
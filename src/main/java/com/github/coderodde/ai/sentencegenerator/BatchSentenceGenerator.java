@@ -0,0 +1,184 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Generates large batches of sentences on a fork-join pool. The sentences
+ * are generated in fixed-size blocks, and each block samples from its own
+ * {@link SplittableRandom} split off a master generator in the block order.
+ * Thus, for a given master seed, the output does not depend on the number of
+ * threads or on the scheduling.
+ */
+final class BatchSentenceGenerator {
+    
+    private static final int BLOCK_SIZE = 1024;
+    private static final int BLOCKS_PER_THREAD = 16;
+    
+    private final SentenceSampler sampler;
+    private final int parallelism;
+    
+    public BatchSentenceGenerator(SentenceSampler sampler, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "The parallelism must be positive. Received "
+                            + parallelism);
+        }
+        
+        this.sampler = sampler;
+        this.parallelism = parallelism;
+    }
+    
+    public List<List<String>> generate(int numberOfSentences,
+                                       int maximumSentenceLength) {
+        return generate(numberOfSentences,
+                        maximumSentenceLength,
+                        new SplittableRandom());
+    }
+    
+    public List<List<String>> generate(int numberOfSentences,
+                                       int maximumSentenceLength,
+                                       long seed) {
+        return generate(numberOfSentences,
+                        maximumSentenceLength,
+                        new SplittableRandom(seed));
+    }
+    
+    public void generate(int numberOfSentences,
+                         int maximumSentenceLength,
+                         long seed,
+                         Consumer<List<String>> consumer) {
+        generate(numberOfSentences,
+                 maximumSentenceLength,
+                 new SplittableRandom(seed),
+                 consumer);
+    }
+    
+    public void generate(int numberOfSentences,
+                         int maximumSentenceLength,
+                         SplittableRandom masterRandom,
+                         Consumer<List<String>> consumer) {
+        if (numberOfSentences < 0) {
+            throw new IllegalArgumentException(
+                    "The number of sentences must not be negative. Received "
+                            + numberOfSentences);
+        }
+        
+        // Only a bounded round of blocks is held in memory at a time, and
+        // the sentences are passed to the consumer in the block order.
+        int roundSize = BLOCK_SIZE * BLOCKS_PER_THREAD * parallelism;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        
+        try {
+            // A long, so that the last round cannot overflow the count.
+            for (long generated = 0;
+                    generated < numberOfSentences;
+                    generated += roundSize) {
+                int numberOfSentencesInRound =
+                        (int) Math.min(roundSize,
+                                       numberOfSentences - generated);
+                
+                int numberOfBlocks =
+                        (numberOfSentencesInRound + BLOCK_SIZE - 1)
+                                / BLOCK_SIZE;
+                
+                SplittableRandom[] blockRandoms =
+                        new SplittableRandom[numberOfBlocks];
+                
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    blockRandoms[i] = masterRandom.split();
+                }
+                
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                List<String>[] sentences = new List[numberOfSentencesInRound];
+                
+                pool.invoke(new GenerateTask(sampler,
+                                             maximumSentenceLength,
+                                             blockRandoms,
+                                             sentences,
+                                             0,
+                                             numberOfBlocks));
+                
+                for (List<String> sentence : sentences) {
+                    consumer.accept(sentence);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private List<List<String>> generate(int numberOfSentences,
+                                        int maximumSentenceLength,
+                                        SplittableRandom masterRandom) {
+        List<List<String>> sentences = new ArrayList<>(numberOfSentences);
+        generate(numberOfSentences,
+                 maximumSentenceLength,
+                 masterRandom,
+                 sentences::add);
+        
+        return sentences;
+    }
+    
+    private static final class GenerateTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final transient SentenceSampler sampler;
+        private final int maximumSentenceLength;
+        private final transient SplittableRandom[] blockRandoms;
+        private final transient List<String>[] sentences;
+        private final int fromBlock;
+        private final int toBlock;
+        
+        GenerateTask(SentenceSampler sampler,
+                     int maximumSentenceLength,
+                     SplittableRandom[] blockRandoms,
+                     List<String>[] sentences,
+                     int fromBlock,
+                     int toBlock) {
+            this.sampler = sampler;
+            this.maximumSentenceLength = maximumSentenceLength;
+            this.blockRandoms = blockRandoms;
+            this.sentences = sentences;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock == 1) {
+                SplittableRandom random = blockRandoms[fromBlock];
+                int fromIndex = fromBlock * BLOCK_SIZE;
+                int toIndex =
+                        Math.min(fromIndex + BLOCK_SIZE, sentences.length);
+                
+                for (int i = fromIndex; i < toIndex; i++) {
+                    sentences[i] =
+                            sampler.sampleSentence(maximumSentenceLength,
+                                                   random);
+                }
+                
+                return;
+            }
+            
+            int middleBlock = (fromBlock + toBlock) >>> 1;
+            invokeAll(new GenerateTask(sampler,
+                                       maximumSentenceLength,
+                                       blockRandoms,
+                                       sentences,
+                                       fromBlock,
+                                       middleBlock),
+                      new GenerateTask(sampler,
+                                       maximumSentenceLength,
+                                       blockRandoms,
+                                       sentences,
+                                       middleBlock,
+                                       toBlock));
+        }
+    }
+}
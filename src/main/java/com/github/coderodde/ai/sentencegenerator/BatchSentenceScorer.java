@@ -0,0 +1,148 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores the lines of a text, one sentence per line, on a fork-join pool.
+ * The lines are read in rounds of fixed-size blocks, the blocks of a round
+ * are tokenized and scored in parallel, and the scores are passed on in the
+ * line order before the next round is read, so only one round is held in
+ * memory at a time.
+ */
+final class BatchSentenceScorer {
+    
+    private static final int BLOCK_SIZE = 1024;
+    private static final int BLOCKS_PER_THREAD = 16;
+    
+    /**
+     * Receives the scored lines that contain at least one word.
+     */
+    interface ScoreConsumer {
+        void accept(String line, int numberOfWords, double logProbability);
+    }
+    
+    private final SentenceScorer scorer;
+    private final int parallelism;
+    
+    public BatchSentenceScorer(SentenceScorer scorer, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "The parallelism must be positive. Received "
+                            + parallelism);
+        }
+        
+        this.scorer = scorer;
+        this.parallelism = parallelism;
+    }
+    
+    public void score(BufferedReader reader, ScoreConsumer consumer)
+            throws IOException {
+        int roundSize = BLOCK_SIZE * BLOCKS_PER_THREAD * parallelism;
+        String[] lines = new String[roundSize];
+        int[] numbersOfWords = new int[roundSize];
+        double[] logProbabilities = new double[roundSize];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        
+        try {
+            int numberOfLines;
+            
+            do {
+                numberOfLines = 0;
+                String line;
+                
+                while (numberOfLines < roundSize
+                        && (line = reader.readLine()) != null) {
+                    lines[numberOfLines++] = line;
+                }
+                
+                int numberOfBlocks =
+                        (numberOfLines + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                
+                if (numberOfBlocks > 0) {
+                    pool.invoke(new ScoreTask(scorer,
+                                              lines,
+                                              numbersOfWords,
+                                              logProbabilities,
+                                              numberOfLines,
+                                              0,
+                                              numberOfBlocks));
+                }
+                
+                for (int i = 0; i < numberOfLines; i++) {
+                    if (numbersOfWords[i] > 0) {
+                        consumer.accept(lines[i],
+                                        numbersOfWords[i],
+                                        logProbabilities[i]);
+                    }
+                }
+            } while (numberOfLines == roundSize);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static final class ScoreTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final transient SentenceScorer scorer;
+        private final String[] lines;
+        private final int[] numbersOfWords;
+        private final double[] logProbabilities;
+        private final int numberOfLines;
+        private final int fromBlock;
+        private final int toBlock;
+        
+        ScoreTask(SentenceScorer scorer,
+                  String[] lines,
+                  int[] numbersOfWords,
+                  double[] logProbabilities,
+                  int numberOfLines,
+                  int fromBlock,
+                  int toBlock) {
+            this.scorer = scorer;
+            this.lines = lines;
+            this.numbersOfWords = numbersOfWords;
+            this.logProbabilities = logProbabilities;
+            this.numberOfLines = numberOfLines;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock == 1) {
+                int fromIndex = fromBlock * BLOCK_SIZE;
+                int toIndex = Math.min(fromIndex + BLOCK_SIZE, numberOfLines);
+                
+                for (int i = fromIndex; i < toIndex; i++) {
+                    List<String> words = WordProvider.getWords(lines[i]);
+                    numbersOfWords[i] = words.size();
+                    logProbabilities[i] = scorer.score(words);
+                }
+                
+                return;
+            }
+            
+            int middleBlock = (fromBlock + toBlock) >>> 1;
+            invokeAll(new ScoreTask(scorer,
+                                    lines,
+                                    numbersOfWords,
+                                    logProbabilities,
+                                    numberOfLines,
+                                    fromBlock,
+                                    middleBlock),
+                      new ScoreTask(scorer,
+                                    lines,
+                                    numbersOfWords,
+                                    logProbabilities,
+                                    numberOfLines,
+                                    middleBlock,
+                                    toBlock));
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the most probable sentences of a given length under the bigram model
+ * of a {@link SentenceScorer} by a beam search over the arcs of the word
+ * graph. Each step extends the hypotheses of the beam by their children in
+ * the order of {@link TopNeighbourIndex} and keeps the {@code beamWidth}
+ * best ones in a bounded min-heap.
+ * <p>
+ * A hypothesis is a word and the index of its predecessor in the previous
+ * step, stored in flat arrays of {@code length * beamWidth} ints, so a
+ * search allocates no per-hypothesis objects and its memory depends only on
+ * the length and the beam width. Under an unsmoothed scorer the index order
+ * is the order of the arc probabilities, so a hypothesis is extended by at
+ * most {@code beamWidth} children, since the children past those can never
+ * make it into the beam, and the extension stops at the first child that
+ * falls below the worst hypothesis of a full beam. A step thus costs at most
+ * {@code beamWidth^2} lookups, however many children a hub word has. The
+ * smoothed probabilities do not follow the arc weights, so under a smoothed
+ * scorer every child is tried.
+ * <p>
+ * A word that still has to be followed by other words must have children
+ * and must not be a sentence terminator, so that dead ends do not crowd the
+ * live hypotheses out of the beam.
+ */
+final class BeamSentenceSearch {
+    
+    private static final String END_OF_SENTENCE = ".";
+    private static final String[] TERMINATORS = { ".", "?", "!" };
+    
+    // Keeps the backpointer tables at no more than 64 MiB.
+    private static final long MAXIMUM_NUMBER_OF_CELLS = 1L << 23;
+    
+    /**
+     * A sentence found by the search.
+     */
+    static final class Result {
+        private final List<String> words;
+        private final double logProbability;
+        
+        private Result(List<String> words, double logProbability) {
+            this.words = words;
+            this.logProbability = logProbability;
+        }
+        
+        public List<String> getWords() {
+            return words;
+        }
+        
+        public double getLogProbability() {
+            return logProbability;
+        }
+    }
+    
+    private final WordGraph graph;
+    private final SentenceScorer scorer;
+    private final TopNeighbourIndex index;
+    private final AnchoredSentenceSampler anchoredSampler;
+    private final int[] terminatorIds;
+    
+    public BeamSentenceSearch(WordGraph graph,
+                              SentenceScorer scorer,
+                              TopNeighbourIndex index,
+                              AnchoredSentenceSampler anchoredSampler) {
+        this.graph = graph;
+        this.scorer = scorer;
+        this.index = index;
+        this.anchoredSampler = anchoredSampler;
+        this.terminatorIds = new int[TERMINATORS.length];
+        
+        for (int i = 0; i < TERMINATORS.length; i++) {
+            terminatorIds[i] = graph.getWordId(TERMINATORS[i]);
+        }
+    }
+    
+    /**
+     * Returns the at most {@code numberOfSentences} most probable sentences
+     * of exactly {@code length} words, best first. If {@code firstWord} is
+     * not {@code null}, the sentences start with it, and their
+     * log-probabilities are conditioned on it. If {@code endWithFullStop} is
+     * {@code true}, the sentences end with the full stop and contain no
+     * other one.
+     */
+    public List<Result> search(int length,
+                               int beamWidth,
+                               int numberOfSentences,
+                               String firstWord,
+                               boolean endWithFullStop) {
+        if (length < 1 || beamWidth < 1 || numberOfSentences < 1) {
+            throw new IllegalArgumentException(
+                    "The length, the beam width and the number of sentences "
+                            + "must be positive.");
+        }
+        
+        beamWidth = Math.max(beamWidth, numberOfSentences);
+        
+        if ((long) length * beamWidth > MAXIMUM_NUMBER_OF_CELLS) {
+            throw new IllegalStateException(
+                    "A beam of "
+                            + beamWidth
+                            + " hypotheses over "
+                            + length
+                            + " words is too large.");
+        }
+        
+        int[] distances = null;
+        
+        if (endWithFullStop) {
+            if (graph.getWordId(END_OF_SENTENCE) == -1) {
+                throw new IllegalStateException(
+                        "No sentence ends with \"" + END_OF_SENTENCE + "\".");
+            }
+            
+            distances = anchoredSampler.getDistancesToEndOfSentence();
+        }
+        
+        // The index order is only the probability order without smoothing.
+        boolean ranked = !scorer.isSmoothed();
+        int[] words = new int[length * beamWidth];
+        int[] predecessors = new int[length * beamWidth];
+        double[] scores = new double[beamWidth];
+        Heap heap = new Heap(beamWidth);
+        
+        if (firstWord != null) {
+            int wordId = graph.getWordId(firstWord);
+            
+            if (wordId == -1) {
+                throw new IllegalStateException(
+                        "\"" + firstWord + "\": no such word.");
+            }
+            
+            if (isAllowed(wordId, length - 1, distances)) {
+                heap.offer(0.0, wordId, -1);
+            }
+        } else {
+            int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+            
+            for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+                double score = scorer.getStartLogProbability(wordId);
+                
+                if (score != Double.NEGATIVE_INFINITY
+                        && isAllowed(wordId, length - 1, distances)) {
+                    heap.offer(score, wordId, -1);
+                }
+            }
+        }
+        
+        int beamSize = heap.drainTo(scores, words, predecessors, 0);
+        
+        for (int step = 1; step < length && beamSize > 0; step++) {
+            int previousOffset = (step - 1) * beamWidth;
+            
+            for (int i = 0; i < beamSize; i++) {
+                int wordId = words[previousOffset + i];
+                int numberOfChildren = index.getNumberOfChildren(wordId);
+                int numberOfExtensions = 0;
+                int rank = 0;
+                
+                while (rank < numberOfChildren
+                        && (!ranked || numberOfExtensions < beamWidth)) {
+                    int childId = index.getChild(wordId, rank++);
+                    
+                    if (!isAllowed(childId, length - 1 - step, distances)) {
+                        continue;
+                    }
+                    
+                    double score = scores[i]
+                            + scorer.getLogProbability(wordId, childId);
+                    
+                    if (heap.offer(score, childId, i)) {
+                        numberOfExtensions++;
+                    } else if (ranked) {
+                        // The remaining children are no more probable.
+                        break;
+                    }
+                }
+            }
+            
+            beamSize = heap.drainTo(scores,
+                                    words,
+                                    predecessors,
+                                    step * beamWidth);
+        }
+        
+        List<Result> results = new ArrayList<>();
+        
+        if (beamSize == 0) {
+            return results;
+        }
+        
+        for (int i = 0; i < Math.min(numberOfSentences, beamSize); i++) {
+            List<String> sentence = new ArrayList<>(length);
+            int hypothesis = i;
+            
+            for (int step = length - 1; step >= 0; step--) {
+                sentence.add(graph.getWord(words[step * beamWidth
+                                                 + hypothesis]));
+                hypothesis = predecessors[step * beamWidth + hypothesis];
+            }
+            
+            Collections.reverse(sentence);
+            results.add(new Result(sentence, scores[i]));
+        }
+        
+        return results;
+    }
+    
+    // Checks that a word may be followed by exactly remainingLength words:
+    // it must be able to continue, and with the full stop required, the full
+    // stop must still be reachable and may only come last.
+    private boolean isAllowed(int wordId,
+                              int remainingLength,
+                              int[] distances) {
+        if (remainingLength > 0
+                && (graph.getNumberOfChildren(wordId) == 0
+                        || isTerminator(wordId))) {
+            return false;
+        }
+        
+        if (distances == null) {
+            return true;
+        }
+        
+        return remainingLength == 0 ?
+               distances[wordId] == 0 :
+               distances[wordId] != 0 && distances[wordId] <= remainingLength;
+    }
+    
+    private boolean isTerminator(int wordId) {
+        for (int terminatorId : terminatorIds) {
+            if (wordId == terminatorId) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * A min-heap of at most {@code capacity} hypotheses ordered by the
+     * score, in parallel primitive arrays.
+     */
+    private static final class Heap {
+        
+        private final double[] scores;
+        private final int[] words;
+        private final int[] predecessors;
+        private int size;
+        
+        Heap(int capacity) {
+            this.scores = new double[capacity];
+            this.words = new int[capacity];
+            this.predecessors = new int[capacity];
+        }
+        
+        /**
+         * Adds a hypothesis unless the heap is full of better ones, and
+         * returns whether it was added.
+         */
+        boolean offer(double score, int word, int predecessor) {
+            if (score == Double.NEGATIVE_INFINITY) {
+                return false;
+            }
+            
+            if (size < scores.length) {
+                set(size, score, word, predecessor);
+                siftUp(size++);
+                return true;
+            }
+            
+            if (score <= scores[0]) {
+                return false;
+            }
+            
+            set(0, score, word, predecessor);
+            siftDown(0);
+            return true;
+        }
+        
+        /**
+         * Moves the hypotheses out best first, the scores to the start of
+         * {@code targetScores} and the rest from {@code offset} on, and
+         * returns their number.
+         */
+        int drainTo(double[] targetScores,
+                    int[] targetWords,
+                    int[] targetPredecessors,
+                    int offset) {
+            int numberOfHypotheses = size;
+            
+            while (size > 0) {
+                int target = size - 1;
+                targetScores[target] = scores[0];
+                targetWords[offset + target] = words[0];
+                targetPredecessors[offset + target] = predecessors[0];
+                size--;
+                
+                if (size > 0) {
+                    set(0, scores[size], words[size], predecessors[size]);
+                    siftDown(0);
+                }
+            }
+            
+            return numberOfHypotheses;
+        }
+        
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                
+                if (!isLess(index, parent)) {
+                    return;
+                }
+                
+                swap(index, parent);
+                index = parent;
+            }
+        }
+        
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                
+                if (left < size && isLess(left, smallest)) {
+                    smallest = left;
+                }
+                
+                if (right < size && isLess(right, smallest)) {
+                    smallest = right;
+                }
+                
+                if (smallest == index) {
+                    return;
+                }
+                
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+        
+        // Breaks the ties by the word and the predecessor so that the
+        // results do not depend on the order of the offers.
+        private boolean isLess(int i, int j) {
+            if (scores[i] != scores[j]) {
+                return scores[i] < scores[j];
+            }
+            
+            if (words[i] != words[j]) {
+                return words[i] > words[j];
+            }
+            
+            return predecessors[i] > predecessors[j];
+        }
+        
+        private void set(int index, double score, int word, int predecessor) {
+            scores[index] = score;
+            words[index] = word;
+            predecessors[index] = predecessor;
+        }
+        
+        private void swap(int i, int j) {
+            double score = scores[i];
+            int word = words[i];
+            int predecessor = predecessors[i];
+            set(i, scores[j], words[j], predecessors[j]);
+            set(j, score, word, predecessor);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.coderodde.ai.sentencegenerator;
  
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -223,6 +224,22 @@ final class BinaryTreeProbabilityDistribution {
                                 maximumWeightLength);
     }
     
+    public AliasProbabilityDistribution freeze() {
+        DirectedWordGraphNode[] elements = 
+                map.keySet().toArray(new DirectedWordGraphNode[map.size()]);
+        
+        // The word order is the word ID order, so the alias table matches 
+        // the one of a compact graph and a seed samples the same words.
+        Arrays.sort(elements);
+        double[] weights = new double[elements.length];
+        
+        for (int index = 0; index < elements.length; index++) {
+            weights[index] = map.get(elements[index]).getWeight();
+        }
+        
+        return new AliasProbabilityDistribution(elements, weights, random);
+    }
+    
     public String getEntryString(DirectedWordGraphNode element) {
         Node node = map.get(element);
         
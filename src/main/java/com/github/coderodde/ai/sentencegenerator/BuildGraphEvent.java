@@ -0,0 +1,38 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event spanning the construction of a word graph, from the counts in
+ * memory, by the external build or from a snapshot.
+ */
+@Name("com.github.coderodde.ai.sentencegenerator.BuildGraph")
+@Label("Build Word Graph")
+@Category("Sentence Generator")
+@Description("Builds the word graph and its probability distributions.")
+final class BuildGraphEvent extends Event {
+    
+    static final String COUNTS = "counts";
+    static final String EXTERNAL = "external";
+    static final String SNAPSHOT = "snapshot";
+    
+    @Label("Source")
+    @Description("Where the graph comes from: counts, external or snapshot.")
+    String source;
+    
+    @Label("Compact")
+    boolean compact;
+    
+    @Label("Sentences")
+    int numberOfSentences;
+    
+    @Label("Words")
+    int numberOfWords;
+    
+    @Label("Distinct Words")
+    int numberOfDistinctWords;
+}
@@ -0,0 +1,453 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class CommandLineArguments {
+
+    private static final class OptionNames {
+        private static final String COMPACT  = "--compact";
+        private static final String PARALLEL = "--parallel";
+        private static final String THREADS  = "--threads";
+        private static final String STREAM   = "--stream";
+        private static final String SAVE     = "--save";
+        private static final String LOAD     = "--load";
+        private static final String ORDER    = "--order";
+        private static final String SERVE    = "--serve";
+        private static final String BATCH    = "--batch";
+        private static final String MIN_COUNT = "--min-count";
+        private static final String MIN_EDGE  = "--min-edge";
+        private static final String MAX_VOCAB = "--max-vocab";
+        private static final String SKETCH    = "--sketch";
+        private static final String SKETCH_THRESHOLD = "--sketch-threshold";
+        private static final String EXTERNAL  = "--external";
+        private static final String TEMP      = "--temp";
+        private static final String OFF_HEAP  = "--off-heap";
+        private static final String KNESER_NEY = "--kneser-ney";
+    }
+    
+    private final List<String> fileNames = new ArrayList<>();
+    private String saveFileName;
+    private String loadFileName;
+    private boolean compact;
+    private boolean parallel;
+    private boolean stream;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int order = 2;
+    private int servePort = -1;
+    private String batchFileName;
+    private int minimumWordCount = 1;
+    private int minimumEdgeCount = 1;
+    private int maximumVocabularySize = Integer.MAX_VALUE;
+    private boolean pruning;
+    private int sketchMegabytes = -1;
+    private int sketchThreshold = 2;
+    private int externalMegabytes = -1;
+    private String temporaryDirectoryName;
+    private boolean offHeap;
+    private boolean kneserNey;
+    
+    private CommandLineArguments() {
+    
+    }
+    
+    public static CommandLineArguments parse(String[] args) {
+        CommandLineArguments commandLineArguments = new CommandLineArguments();
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            
+            switch (arg) {
+                case OptionNames.COMPACT -> commandLineArguments.compact = true;
+                
+                case OptionNames.PARALLEL -> 
+                        commandLineArguments.parallel = true;
+                
+                case OptionNames.STREAM -> commandLineArguments.stream = true;
+                
+                case OptionNames.OFF_HEAP -> 
+                        commandLineArguments.offHeap = true;
+                
+                case OptionNames.KNESER_NEY -> 
+                        commandLineArguments.kneserNey = true;
+                
+                case OptionNames.SAVE -> 
+                        commandLineArguments.saveFileName = 
+                                parseString(args, ++i, arg);
+                
+                case OptionNames.LOAD -> 
+                        commandLineArguments.loadFileName = 
+                                parseString(args, ++i, arg);
+                
+                case OptionNames.THREADS -> {
+                    commandLineArguments.parallel = true;
+                    commandLineArguments.threads = 
+                            parsePositiveInt(args, ++i, arg);
+                }
+                
+                case OptionNames.ORDER -> {
+                    commandLineArguments.order = 
+                            parsePositiveInt(args, ++i, arg);
+                    
+                    if (commandLineArguments.order < 2) {
+                        throw new IllegalArgumentException(
+                                "Option \""
+                                        + arg
+                                        + "\" expects a value of at least 2, "
+                                        + "got "
+                                        + commandLineArguments.order
+                                        + ".");
+                    }
+                }
+                
+                case OptionNames.MIN_COUNT -> {
+                    commandLineArguments.pruning = true;
+                    commandLineArguments.minimumWordCount = 
+                            parsePositiveInt(args, ++i, arg);
+                }
+                
+                case OptionNames.MIN_EDGE -> {
+                    commandLineArguments.pruning = true;
+                    commandLineArguments.minimumEdgeCount = 
+                            parsePositiveInt(args, ++i, arg);
+                }
+                
+                case OptionNames.MAX_VOCAB -> {
+                    commandLineArguments.pruning = true;
+                    commandLineArguments.maximumVocabularySize = 
+                            parsePositiveInt(args, ++i, arg);
+                }
+                
+                case OptionNames.SKETCH -> 
+                        commandLineArguments.sketchMegabytes = 
+                                parsePositiveInt(args, ++i, arg);
+                
+                case OptionNames.SKETCH_THRESHOLD -> 
+                        commandLineArguments.sketchThreshold = 
+                                parsePositiveInt(args, ++i, arg);
+                
+                case OptionNames.EXTERNAL -> 
+                        commandLineArguments.externalMegabytes = 
+                                parsePositiveInt(args, ++i, arg);
+                
+                case OptionNames.TEMP -> 
+                        commandLineArguments.temporaryDirectoryName = 
+                                parseString(args, ++i, arg);
+                
+                case OptionNames.BATCH -> 
+                        commandLineArguments.batchFileName = 
+                                parseString(args, ++i, arg);
+                
+                case OptionNames.SERVE -> {
+                    commandLineArguments.servePort = 
+                            parsePositiveInt(args, ++i, arg);
+                    
+                    if (commandLineArguments.servePort > 65535) {
+                        throw new IllegalArgumentException(
+                                "Option \""
+                                        + arg
+                                        + "\" expects a port number, got "
+                                        + commandLineArguments.servePort
+                                        + ".");
+                    }
+                }
+                
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException(
+                                "Unknown option \"" + arg + "\".");
+                    }
+                    
+                    commandLineArguments.fileNames.add(arg);
+                }
+            }
+        }
+        
+        if (commandLineArguments.parallel && commandLineArguments.stream) {
+            throw new IllegalArgumentException(
+                    "Options \""
+                            + OptionNames.PARALLEL
+                            + "\" and \""
+                            + OptionNames.STREAM
+                            + "\" are mutually exclusive.");
+        }
+        
+        if (commandLineArguments.servePort != -1
+                && commandLineArguments.batchFileName != null) {
+            throw new IllegalArgumentException(
+                    "Options \""
+                            + OptionNames.SERVE
+                            + "\" and \""
+                            + OptionNames.BATCH
+                            + "\" are mutually exclusive.");
+        }
+        
+        if (commandLineArguments.sketchMegabytes != -1) {
+            if (commandLineArguments.parallel) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.SKETCH
+                                + "\" does not support \""
+                                + OptionNames.PARALLEL
+                                + "\".");
+            }
+            
+            if (commandLineArguments.order > 2) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.SKETCH
+                                + "\" does not support \""
+                                + OptionNames.ORDER
+                                + "\".");
+            }
+            
+            if (commandLineArguments.loadFileName != null) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.SKETCH
+                                + "\" requires a corpus file.");
+            }
+        }
+        
+        if (commandLineArguments.externalMegabytes != -1) {
+            if (commandLineArguments.parallel) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.EXTERNAL
+                                + "\" does not support \""
+                                + OptionNames.PARALLEL
+                                + "\".");
+            }
+            
+            if (commandLineArguments.sketchMegabytes != -1) {
+                throw new IllegalArgumentException(
+                        "Options \""
+                                + OptionNames.EXTERNAL
+                                + "\" and \""
+                                + OptionNames.SKETCH
+                                + "\" are mutually exclusive.");
+            }
+            
+            if (commandLineArguments.order > 2) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.EXTERNAL
+                                + "\" does not support \""
+                                + OptionNames.ORDER
+                                + "\".");
+            }
+            
+            if (commandLineArguments.pruning) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.EXTERNAL
+                                + "\" does not support pruning.");
+            }
+            
+            if (commandLineArguments.loadFileName != null) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.EXTERNAL
+                                + "\" requires a corpus file.");
+            }
+        } else if (commandLineArguments.temporaryDirectoryName != null) {
+            throw new IllegalArgumentException(
+                    "Option \""
+                            + OptionNames.TEMP
+                            + "\" requires \""
+                            + OptionNames.EXTERNAL
+                            + "\".");
+        }
+        
+        if (commandLineArguments.pruning) {
+            if (commandLineArguments.order > 2) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.ORDER
+                                + "\" does not support pruning.");
+            }
+            
+            if (commandLineArguments.loadFileName != null) {
+                throw new IllegalArgumentException(
+                        "Pruning requires a corpus file.");
+            }
+        }
+        
+        if (commandLineArguments.order > 2) {
+            if (commandLineArguments.parallel) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.ORDER
+                                + "\" does not support \""
+                                + OptionNames.PARALLEL
+                                + "\".");
+            }
+            
+            if (commandLineArguments.loadFileName != null) {
+                throw new IllegalArgumentException(
+                        "Option \""
+                                + OptionNames.ORDER
+                                + "\" requires a corpus file.");
+            }
+        }
+        
+        if (commandLineArguments.loadFileName != null) {
+            if (!commandLineArguments.fileNames.isEmpty()) {
+                throw new IllegalArgumentException(
+                        "Both a corpus file and a snapshot to load given.");
+            }
+        } else if (commandLineArguments.fileNames.isEmpty()) {
+            throw new IllegalArgumentException("No corpus file given.");
+        }
+        
+        return commandLineArguments;
+    }
+    
+    /**
+     * Returns the corpus files, directories and glob patterns in the order 
+     * given.
+     */
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+    
+    public String getSaveFileName() {
+        return saveFileName;
+    }
+    
+    public String getLoadFileName() {
+        return loadFileName;
+    }
+    
+    public boolean isCompact() {
+        return compact;
+    }
+    
+    public boolean isParallel() {
+        return parallel;
+    }
+    
+    public boolean isStream() {
+        return stream;
+    }
+    
+    public int getThreads() {
+        return threads;
+    }
+    
+    public int getOrder() {
+        return order;
+    }
+    
+    public boolean isServe() {
+        return servePort != -1;
+    }
+    
+    public int getServePort() {
+        return servePort;
+    }
+    
+    public boolean isPruning() {
+        return pruning;
+    }
+    
+    public int getMinimumWordCount() {
+        return minimumWordCount;
+    }
+    
+    public int getMinimumEdgeCount() {
+        return minimumEdgeCount;
+    }
+    
+    public int getMaximumVocabularySize() {
+        return maximumVocabularySize;
+    }
+    
+    public boolean isSketch() {
+        return sketchMegabytes != -1;
+    }
+    
+    public int getSketchMegabytes() {
+        return sketchMegabytes;
+    }
+    
+    public int getSketchThreshold() {
+        return sketchThreshold;
+    }
+    
+    public boolean isExternal() {
+        return externalMegabytes != -1;
+    }
+    
+    public int getExternalMegabytes() {
+        return externalMegabytes;
+    }
+    
+    /**
+     * Returns the directory for the spill files, or {@code null} for the
+     * default temporary directory.
+     */
+    public String getTemporaryDirectoryName() {
+        return temporaryDirectoryName;
+    }
+    
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    /**
+     * Returns whether sentences are scored with Kneser-Ney smoothing.
+     */
+    public boolean isKneserNey() {
+        return kneserNey;
+    }
+    
+    public boolean isBatch() {
+        return batchFileName != null;
+    }
+    
+    public String getBatchFileName() {
+        return batchFileName;
+    }
+    
+    private static String parseString(String[] args, 
+                                      int index, 
+                                      String optionName) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(
+                    "Option \"" + optionName + "\" requires a value.");
+        }
+        
+        return args[index];
+    }
+    
+    private static int parsePositiveInt(String[] args, 
+                                        int index, 
+                                        String optionName) {
+        String argument = parseString(args, index, optionName);
+        
+        int value;
+        
+        try {
+            value = Integer.parseInt(argument);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Option \"" 
+                            + optionName 
+                            + "\" expects an integer, got \"" 
+                            + argument 
+                            + "\".");
+        }
+        
+        if (value <= 0) {
+            throw new IllegalArgumentException(
+                    "Option \"" 
+                            + optionName 
+                            + "\" expects a positive value, got " 
+                            + value 
+                            + ".");
+        }
+        
+        return value;
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * An immutable word graph in the compressed sparse row format. The arcs of
+ * the word with ID {@code i} occupy the positions
+ * {@code offsets[i], ..., offsets[i + 1] - 1} of the target, weight and alias
+ * table arrays.
+ */
+final class CompactWordGraph implements AliasWordGraph {
+    
+    private final String[] words;
+    
+    private final int[] childOffsets;
+    private final int[] childIds;
+    private final int[] childWeights;
+    private final double[] childProbabilities;
+    private final int[] childAliases;
+    private final long[] totalChildWeights;
+    
+    private final int[] parentOffsets;
+    private final int[] parentIds;
+    private final int[] parentWeights;
+    private final double[] parentProbabilities;
+    private final int[] parentAliases;
+    private final long[] totalParentWeights;
+    
+    private final int[] numbersOfStarts;
+    private final int numberOfSentences;
+    private final int numberOfWords;
+    
+    CompactWordGraph(String[] words,
+                     int[] childOffsets,
+                     int[] childIds,
+                     int[] childWeights,
+                     int[] parentOffsets,
+                     int[] parentIds,
+                     int[] parentWeights,
+                     int[] numbersOfStarts,
+                     int numberOfSentences,
+                     int numberOfWords) {
+        
+        this(words,
+             childOffsets,
+             childIds,
+             childWeights,
+             new double[childIds.length],
+             new int[childIds.length],
+             parentOffsets,
+             parentIds,
+             parentWeights,
+             new double[parentIds.length],
+             new int[parentIds.length],
+             numbersOfStarts,
+             numberOfSentences,
+             numberOfWords);
+        
+        buildAliasTables(childOffsets,
+                         childWeights,
+                         childProbabilities,
+                         childAliases);
+        
+        buildAliasTables(parentOffsets,
+                         parentWeights,
+                         parentProbabilities,
+                         parentAliases);
+    }
+    
+    CompactWordGraph(String[] words,
+                     int[] childOffsets,
+                     int[] childIds,
+                     int[] childWeights,
+                     double[] childProbabilities,
+                     int[] childAliases,
+                     int[] parentOffsets,
+                     int[] parentIds,
+                     int[] parentWeights,
+                     double[] parentProbabilities,
+                     int[] parentAliases,
+                     int[] numbersOfStarts,
+                     int numberOfSentences,
+                     int numberOfWords) {
+        
+        this.words = words;
+        this.childOffsets = childOffsets;
+        this.childIds = childIds;
+        this.childWeights = childWeights;
+        this.childProbabilities = childProbabilities;
+        this.childAliases = childAliases;
+        this.parentOffsets = parentOffsets;
+        this.parentIds = parentIds;
+        this.parentWeights = parentWeights;
+        this.parentProbabilities = parentProbabilities;
+        this.parentAliases = parentAliases;
+        this.numbersOfStarts = numbersOfStarts;
+        this.numberOfSentences = numberOfSentences;
+        this.numberOfWords = numberOfWords;
+        this.totalChildWeights = getTotalWeights(childOffsets, childWeights);
+        this.totalParentWeights = getTotalWeights(parentOffsets, 
+                                                  parentWeights);
+    }
+    
+    @Override
+    public int getNumberOfSentences() {
+        return numberOfSentences;
+    }
+    
+    @Override
+    public int getNumberOfWords() {
+        return numberOfWords;
+    }
+    
+    @Override
+    public int getNumberOfDistinctWords() {
+        return words.length;
+    }
+    
+    @Override
+    public String getWord(int wordId) {
+        return words[wordId];
+    }
+    
+    @Override
+    public int getWordId(String word) {
+        int index = Arrays.binarySearch(words, word);
+        return index < 0 ? -1 : index;
+    }
+    
+    @Override
+    public int getNumberOfChildren(int wordId) {
+        return childOffsets[wordId + 1] - childOffsets[wordId];
+    }
+    
+    @Override
+    public int getChild(int wordId, int index) {
+        return childIds[childOffsets[wordId] + index];
+    }
+    
+    @Override
+    public int getChildWeight(int wordId, int index) {
+        return childWeights[childOffsets[wordId] + index];
+    }
+    
+    @Override
+    public long getTotalChildWeight(int wordId) {
+        return totalChildWeights[wordId];
+    }
+    
+    @Override
+    public int getNumberOfParents(int wordId) {
+        return parentOffsets[wordId + 1] - parentOffsets[wordId];
+    }
+    
+    @Override
+    public int getParent(int wordId, int index) {
+        return parentIds[parentOffsets[wordId] + index];
+    }
+    
+    @Override
+    public int getParentWeight(int wordId, int index) {
+        return parentWeights[parentOffsets[wordId] + index];
+    }
+    
+    @Override
+    public long getTotalParentWeight(int wordId) {
+        return totalParentWeights[wordId];
+    }
+    
+    @Override
+    public int getNumberOfStarts(int wordId) {
+        return numbersOfStarts[wordId];
+    }
+    
+    @Override
+    public double getChildProbability(int wordId, int index) {
+        return childProbabilities[childOffsets[wordId] + index];
+    }
+    
+    @Override
+    public int getChildAlias(int wordId, int index) {
+        return childAliases[childOffsets[wordId] + index];
+    }
+    
+    @Override
+    public double getParentProbability(int wordId, int index) {
+        return parentProbabilities[parentOffsets[wordId] + index];
+    }
+    
+    @Override
+    public int getParentAlias(int wordId, int index) {
+        return parentAliases[parentOffsets[wordId] + index];
+    }
+    
+    @Override
+    public int sampleParent(int wordId, RandomGenerator random) {
+        return sample(parentOffsets,
+                      parentIds,
+                      parentProbabilities,
+                      parentAliases,
+                      wordId,
+                      random);
+    }
+    
+    @Override
+    public int sampleChild(int wordId, RandomGenerator random) {
+        return sample(childOffsets,
+                      childIds,
+                      childProbabilities,
+                      childAliases,
+                      wordId,
+                      random);
+    }
+    
+    private static int sample(int[] offsets,
+                              int[] ids,
+                              double[] probabilities,
+                              int[] aliases,
+                              int wordId,
+                              RandomGenerator random) {
+        int fromIndex = offsets[wordId];
+        int toIndex = offsets[wordId + 1];
+        
+        if (fromIndex == toIndex) {
+            return -1;
+        }
+        
+        int index = AliasProbabilityDistribution.sampleIndex(
+                probabilities,
+                aliases,
+                fromIndex,
+                toIndex,
+                random.nextDouble());
+        
+        return ids[fromIndex + index];
+    }
+    
+    private static void buildAliasTables(int[] offsets,
+                                         int[] weights,
+                                         double[] probabilities,
+                                         int[] aliases) {
+        // The alias tables are built from doubles; reuse one scratch row.
+        double[] rowWeights = new double[getMaximumRowLength(offsets)];
+        double[] rowProbabilities = new double[rowWeights.length];
+        int[] rowAliases = new int[rowWeights.length];
+        
+        for (int wordId = 0; wordId < offsets.length - 1; wordId++) {
+            int fromIndex = offsets[wordId];
+            int toIndex = offsets[wordId + 1];
+            int rowLength = toIndex - fromIndex;
+            
+            for (int i = 0; i < rowLength; i++) {
+                rowWeights[i] = weights[fromIndex + i];
+            }
+            
+            AliasProbabilityDistribution.buildAliasTable(rowWeights,
+                                                         0,
+                                                         rowLength,
+                                                         rowProbabilities,
+                                                         rowAliases);
+            
+            System.arraycopy(rowProbabilities,
+                             0,
+                             probabilities,
+                             fromIndex,
+                             rowLength);
+            
+            System.arraycopy(rowAliases, 0, aliases, fromIndex, rowLength);
+        }
+    }
+    
+    private static long[] getTotalWeights(int[] offsets, int[] weights) {
+        long[] totalWeights = new long[offsets.length - 1];
+        
+        for (int wordId = 0; wordId < totalWeights.length; wordId++) {
+            long totalWeight = 0L;
+            
+            for (int i = offsets[wordId]; i < offsets[wordId + 1]; i++) {
+                totalWeight += weights[i];
+            }
+            
+            totalWeights[wordId] = totalWeight;
+        }
+        
+        return totalWeights;
+    }
+    
+    private static int getMaximumRowLength(int[] offsets) {
+        int maximumRowLength = 0;
+        
+        for (int i = 0; i < offsets.length - 1; i++) {
+            maximumRowLength = Math.max(maximumRowLength,
+                                        offsets[i + 1] - offsets[i]);
+        }
+        
+        return maximumRowLength;
+    }
+}
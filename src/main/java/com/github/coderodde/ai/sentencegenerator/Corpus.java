@@ -0,0 +1,157 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A corpus made of one or more shard files. A corpus argument is either a
+ * file, a directory whose non-hidden regular files are taken recursively, or
+ * a glob pattern such as {@code shards/*.txt.gz}, matched relative to the
+ * longest directory prefix without wildcards. Files ending in {@code .gz} are
+ * decompressed on the fly. Every shard is split into sentences on its own, so
+ * a sentence never spans two shards.
+ */
+final class Corpus {
+    
+    private static final String GLOB_CHARACTERS = "*?[{";
+    
+    private final List<Path> files;
+    
+    private Corpus(List<Path> files) {
+        this.files = files;
+    }
+    
+    public static Corpus resolve(List<String> names) throws IOException {
+        List<Path> files = new ArrayList<>();
+        
+        for (String name : names) {
+            List<Path> matches = isGlob(name) ?
+                                 resolveGlob(name) :
+                                 resolvePath(Path.of(name));
+            
+            if (matches.isEmpty()) {
+                throw new IOException(
+                        "No corpus files match \"" + name + "\".");
+            }
+            
+            files.addAll(matches);
+        }
+        
+        return new Corpus(files);
+    }
+    
+    public List<Path> getFiles() {
+        return files;
+    }
+    
+    public int getNumberOfFiles() {
+        return files.size();
+    }
+    
+    public long getSizeInBytes() throws IOException {
+        long size = 0L;
+        
+        for (Path file : files) {
+            size += Files.size(file);
+        }
+        
+        return size;
+    }
+    
+    public List<String> getSentences() throws IOException {
+        if (files.size() == 1) {
+            return new SentenceProducer(files.get(0)).getSentences();
+        }
+        
+        List<String> sentences = new ArrayList<>();
+        
+        for (Path file : files) {
+            sentences.addAll(new SentenceProducer(file).getSentences());
+        }
+        
+        return sentences;
+    }
+    
+    public void forEachSentence(Consumer<String> sentenceConsumer)
+            throws IOException {
+        for (Path file : files) {
+            new SentenceProducer(file).forEachSentence(sentenceConsumer);
+        }
+    }
+    
+    private static boolean isGlob(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(name.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private static List<Path> resolvePath(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            // A missing file fails when it is read, like a single corpus.
+            return List.of(path);
+        }
+        
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(Files::isRegularFile)
+                        .filter(file -> !isHidden(path.relativize(file)))
+                        .sorted()
+                        .toList();
+        }
+    }
+    
+    private static List<Path> resolveGlob(String pattern) throws IOException {
+        Path glob = Path.of(pattern);
+        Path directory = glob.getRoot();
+        int nameIndex = 0;
+        
+        while (nameIndex < glob.getNameCount() - 1
+                && !isGlob(glob.getName(nameIndex).toString())) {
+            directory = directory == null ?
+                        glob.getName(nameIndex) :
+                        directory.resolve(glob.getName(nameIndex));
+            nameIndex++;
+        }
+        
+        Path base = directory == null ? Path.of("") : directory;
+        
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        
+        PathMatcher matcher =
+                FileSystems.getDefault()
+                           .getPathMatcher(
+                                   "glob:"
+                                           + glob.subpath(
+                                                   nameIndex,
+                                                   glob.getNameCount()));
+        
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                        .filter(file -> matcher.matches(base.relativize(file)))
+                        .sorted()
+                        .toList();
+        }
+    }
+    
+    private static boolean isHidden(Path relativePath) {
+        for (Path name : relativePath) {
+            if (name.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+/**
+ * A count-min sketch over {@code long} keys with conservative updates. The
+ * sketch has {@code depth} rows of {@code width} counters, and an estimated
+ * count never falls below the true count, while it exceeds the true count by
+ * more than {@code getEpsilon() * getTotalCount()} only with probability at
+ * most {@code getDelta()}.
+ */
+final class CountMinSketch {
+    
+    private static final long[] SEEDS = {
+        0x9e3779b97f4a7c15L,
+        0xc2b2ae3d27d4eb4fL,
+        0x165667b19e3779f9L,
+        0xd6e8feb86659fd93L,
+        0xff51afd7ed558ccdL,
+        0xc4ceb9fe1a85ec53L,
+        0x27d4eb2f165667c5L,
+        0x94d049bb133111ebL,
+    };
+    
+    private final int depth;
+    private final int width;
+    private final int shift;
+    private final int[] counters;
+    private long totalCount;
+    
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException(
+                    "The depth must be within [1, "
+                            + SEEDS.length
+                            + "]. Received "
+                            + depth);
+        }
+        
+        if (width < 2 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException(
+                    "The width must be a power of two of at least 2. "
+                            + "Received "
+                            + width);
+        }
+        
+        this.depth = depth;
+        this.width = width;
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(width);
+        this.counters = new int[depth * width];
+    }
+    
+    /**
+     * Returns the largest power-of-two width with which a sketch of the
+     * given depth fits in {@code bytes} bytes.
+     */
+    public static int getWidth(int depth, long bytes) {
+        long width = bytes / ((long) depth * Integer.BYTES);
+        
+        if (width < 2L) {
+            return 2;
+        }
+        
+        return Integer.highestOneBit((int) Math.min(width, 1 << 30));
+    }
+    
+    /**
+     * Counts one more occurrence of {@code key} and returns its new estimated
+     * count.
+     */
+    public int increment(long key) {
+        int estimate = Integer.MAX_VALUE;
+        
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[getIndex(row, key)]);
+        }
+        
+        // Conservative update: raising only the counters below the new
+        // estimate keeps every estimate an upper bound.
+        estimate++;
+        
+        for (int row = 0; row < depth; row++) {
+            int index = getIndex(row, key);
+            
+            if (counters[index] < estimate) {
+                counters[index] = estimate;
+            }
+        }
+        
+        totalCount++;
+        return estimate;
+    }
+    
+    public int estimate(long key) {
+        int estimate = Integer.MAX_VALUE;
+        
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[getIndex(row, key)]);
+        }
+        
+        return estimate;
+    }
+    
+    public int getDepth() {
+        return depth;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public long getTotalCount() {
+        return totalCount;
+    }
+    
+    public long getSizeInBytes() {
+        return (long) counters.length * Integer.BYTES;
+    }
+    
+    public double getEpsilon() {
+        return Math.E / width;
+    }
+    
+    public double getDelta() {
+        return Math.exp(-depth);
+    }
+    
+    private int getIndex(int row, long key) {
+        long hash = (key + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        hash ^= hash >>> 29;
+        hash *= 0xbf58476d1ce4e5b9L;
+        return row * width + (int) (hash >>> shift);
+    }
+}
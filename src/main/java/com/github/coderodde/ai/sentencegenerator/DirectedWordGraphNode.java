@@ -3,6 +3,7 @@ package com.github.coderodde.ai.sentencegenerator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.random.RandomGenerator;
 
 final class DirectedWordGraphNode 
         implements Comparable<DirectedWordGraphNode> {
@@ -22,6 +23,11 @@ final class DirectedWordGraphNode
     private final Map<DirectedWordGraphNode, Integer> parentMap = 
             new HashMap<>();
     
+    private AliasProbabilityDistribution frozenParentProbabilityDistribution;
+    private AliasProbabilityDistribution frozenChildProbabilityDistribution;
+    
+    private int id = -1;
+    
     public DirectedWordGraphNode(String word) {
         this.word = word;
     }
@@ -30,6 +36,14 @@ final class DirectedWordGraphNode
         return word;
     }
     
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
     public double getChildWeight(DirectedWordGraphNode child) {
         return getParentProbabilityDistribution().getWeight(child);
     }
@@ -39,21 +53,12 @@ final class DirectedWordGraphNode
     }
     
     public void connectToParent(DirectedWordGraphNode parentNode) {
-        if (!parentMap.containsKey(parentNode)) {
-            parentMap.put(parentNode, 1);
-        } else {
-            parentMap.put(
-                    parentNode, 
-                    parentMap.get(parentNode) + 1);
-        }
-        
-        if (!parentNode.childMap.containsKey(this)) {
-            parentNode.childMap.put(this, 1);
-        } else {
-            parentNode.childMap.put(
-                    this,
-                    parentNode.childMap.get(this) + 1);
-        }
+        connectToParent(parentNode, 1);
+    }
+    
+    public void connectToParent(DirectedWordGraphNode parentNode, int count) {
+        parentMap.merge(parentNode, count, Integer::sum);
+        parentNode.childMap.merge(this, count, Integer::sum);
     }
     
     public Set<DirectedWordGraphNode> getChildren() {
@@ -65,6 +70,10 @@ final class DirectedWordGraphNode
     }
     
     public void computeProbabilityDistribution() {
+        // Starts over, so that a repeated call does not count the arcs twice.
+        parentProbabilityDistribution.clear();
+        childProbabilityDistribution.clear();
+        
         for (Map.Entry<DirectedWordGraphNode, Integer> entry
                 : parentMap.entrySet()) {
             
@@ -84,6 +93,17 @@ final class DirectedWordGraphNode
                     entry.getKey(), 
                     weight);
         }
+        
+        frozenParentProbabilityDistribution = null;
+        frozenChildProbabilityDistribution = null;
+    }
+    
+    public void freeze() {
+        frozenParentProbabilityDistribution = 
+                parentProbabilityDistribution.freeze();
+        
+        frozenChildProbabilityDistribution = 
+                childProbabilityDistribution.freeze();
     }
     
     public DirectedWordGraphNode sampleParent() {
@@ -91,9 +111,29 @@ final class DirectedWordGraphNode
             return null;
         }
         
+        if (frozenParentProbabilityDistribution != null) {
+            return frozenParentProbabilityDistribution.sampleElement();
+        }
+        
         return parentProbabilityDistribution.sampleElement();
     }
     
+    public DirectedWordGraphNode sampleParent(RandomGenerator random) {
+        if (frozenParentProbabilityDistribution.isEmpty()) {
+            return null;
+        }
+        
+        return frozenParentProbabilityDistribution.sampleElement(random);
+    }
+    
+    public DirectedWordGraphNode sampleChild(RandomGenerator random) {
+        if (frozenChildProbabilityDistribution.isEmpty()) {
+            return null;
+        }
+        
+        return frozenChildProbabilityDistribution.sampleElement(random);
+    }
+    
     public BinaryTreeProbabilityDistribution 
         getParentProbabilityDistribution() {
         return parentProbabilityDistribution;
@@ -103,6 +143,16 @@ final class DirectedWordGraphNode
         getChildProbabilityDistribution() {
         return childProbabilityDistribution;
     }
+        
+    public AliasProbabilityDistribution 
+        getFrozenParentProbabilityDistribution() {
+        return frozenParentProbabilityDistribution;
+    }
+    
+    public AliasProbabilityDistribution 
+        getFrozenChildProbabilityDistribution() {
+        return frozenChildProbabilityDistribution;
+    }
     
     @Override
     public String toString() {
@@ -0,0 +1,480 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Builds a word graph whose arcs do not fit in memory. The corpus is
+ * streamed twice. The first pass collects the vocabulary and the sentence
+ * start counts and assigns the alphabetical word IDs, and the second pass collects the bigrams as
+ * {@code long} keys into a fixed-size buffer. Whenever the buffer fills up,
+ * it is sorted twice, by {@code (parent, child)} and by
+ * {@code (child, parent)}, and each order is spilled with the counts of
+ * equal keys collapsed into a run file. The runs of each order are then
+ * k-way merged into one sorted file of {@code (key, count)} records, which
+ * is read row by row into a {@link CompactWordGraph} or streamed into a
+ * snapshot.
+ * <p>
+ * The heap holds the bigram buffer, the vocabulary and one row of each
+ * direction, no matter how many bigrams the corpus has. The word graph and
+ * the snapshot format count the sentences, the words and the occurrences of
+ * every bigram in {@code int}s, so a corpus that exceeds any of these fails
+ * with an {@link IOException} instead of overflowing.
+ */
+final class ExternalWordGraphBuilder implements Closeable {
+    
+    private static final int IO_BUFFER_SIZE = 1 << 15;
+    private static final int MAXIMUM_FAN_IN = 64;
+    private static final int RECORD_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int MAXIMUM_BUFFER_LENGTH = Integer.MAX_VALUE - 8;
+    
+    private final Corpus corpus;
+    private final Path directory;
+    private final long[] buffer;
+    private final List<Path> childRuns = new ArrayList<>();
+    private final List<Path> parentRuns = new ArrayList<>();
+    private int bufferSize;
+    private int numberOfFiles;
+    private long numberOfSpilledBytes;
+    private int numberOfSentences;
+    private int numberOfWords;
+    private String[] words;
+    private int[] numbersOfStarts;
+    private Path childArcs;
+    private Path parentArcs;
+    private long numberOfArcs;
+    
+    public ExternalWordGraphBuilder(Corpus corpus,
+                                    Path temporaryDirectory,
+                                    long memoryBudgetInBytes)
+            throws IOException {
+        this.corpus = corpus;
+        this.buffer =
+                new long[(int) Math.max(
+                        1L,
+                        Math.min(memoryBudgetInBytes / Long.BYTES,
+                                 MAXIMUM_BUFFER_LENGTH))];
+        
+        this.directory =
+                Files.createTempDirectory(temporaryDirectory,
+                                          "sentence-generator-");
+    }
+    
+    /**
+     * Streams the corpus twice and merges its bigrams into one sorted file
+     * per direction.
+     */
+    public void countBigrams() throws IOException {
+        SymbolTable symbolTable = new SymbolTable();
+        
+        // Indexed by the symbol IDs.
+        int[][] startCounts = { new int[16] };
+        
+        try {
+            corpus.forEachSentence(sentence -> {
+                List<String> sentenceWords = WordProvider.getWords(sentence);
+                
+                if (!sentenceWords.isEmpty()) {
+                    numberOfSentences =
+                            add(numberOfSentences, 1, "sentences");
+                    
+                    numberOfWords =
+                            add(numberOfWords, sentenceWords.size(), "words");
+                    
+                    for (String word : sentenceWords) {
+                        symbolTable.getOrAddId(word);
+                    }
+                    
+                    int startId = symbolTable.getId(sentenceWords.get(0));
+                    
+                    if (startId >= startCounts[0].length) {
+                        startCounts[0] =
+                                Arrays.copyOf(startCounts[0],
+                                              Math.max(2 * startId, 16));
+                    }
+                    
+                    startCounts[0][startId]++;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        
+        words = new String[symbolTable.size()];
+        
+        for (int i = 0; i < words.length; i++) {
+            words[i] = symbolTable.getSymbol(i);
+        }
+        
+        Arrays.sort(words);
+        int[] symbolIdToWordId = new int[words.length];
+        numbersOfStarts = new int[words.length];
+        
+        for (int wordId = 0; wordId < words.length; wordId++) {
+            int symbolId = symbolTable.getId(words[wordId]);
+            symbolIdToWordId[symbolId] = wordId;
+            
+            if (symbolId < startCounts[0].length) {
+                numbersOfStarts[wordId] = startCounts[0][symbolId];
+            }
+        }
+        
+        try {
+            corpus.forEachSentence(sentence -> {
+                long previousWordId = -1L;
+                
+                for (String word : WordProvider.getWords(sentence)) {
+                    long wordId = symbolIdToWordId[symbolTable.getId(word)];
+                    
+                    if (previousWordId != -1L) {
+                        addBigram((previousWordId << 32) | wordId);
+                    }
+                    
+                    previousWordId = wordId;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        
+        spill();
+        childArcs = merge(childRuns);
+        parentArcs = merge(parentRuns);
+        numberOfArcs = Files.size(childArcs) / RECORD_BYTES;
+    }
+    
+    public CompactWordGraph buildCompact() throws IOException {
+        int[] childOffsets = new int[words.length + 1];
+        int[] childIds = new int[toArrayLength(numberOfArcs)];
+        int[] childWeights = new int[childIds.length];
+        int[] parentOffsets = new int[words.length + 1];
+        int[] parentIds = new int[childIds.length];
+        int[] parentWeights = new int[childIds.length];
+        
+        fill(childArcs, childOffsets, childIds, childWeights);
+        fill(parentArcs, parentOffsets, parentIds, parentWeights);
+        
+        return new CompactWordGraph(words,
+                                    childOffsets,
+                                    childIds,
+                                    childWeights,
+                                    parentOffsets,
+                                    parentIds,
+                                    parentWeights,
+                                    numbersOfStarts,
+                                    numberOfSentences,
+                                    numberOfWords);
+    }
+    
+    /**
+     * Copies the graph straight from the sorted files into off-heap memory.
+     */
+    public OffHeapWordGraph buildOffHeap() throws IOException {
+        return OffHeapWordGraph.copyOf(wordId -> words[wordId],
+                                       wordId -> numbersOfStarts[wordId],
+                                       words.length,
+                                       consumer -> scan(childArcs, consumer),
+                                       numberOfArcs,
+                                       consumer -> scan(parentArcs, consumer),
+                                       numberOfArcs,
+                                       numberOfSentences,
+                                       numberOfWords);
+    }
+    
+    /**
+     * Streams the graph into a snapshot without building it in memory.
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        WordGraphSnapshot.save(words,
+                               numbersOfStarts,
+                               numberOfSentences,
+                               numberOfWords,
+                               numberOfArcs,
+                               consumer -> scan(childArcs, consumer),
+                               numberOfArcs,
+                               consumer -> scan(parentArcs, consumer),
+                               path);
+    }
+    
+    public int getNumberOfRuns() {
+        return childRuns.size();
+    }
+    
+    public long getNumberOfSpilledBytes() {
+        return numberOfSpilledBytes;
+    }
+    
+    public long getNumberOfArcs() {
+        return numberOfArcs;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+        
+        Files.deleteIfExists(directory);
+    }
+    
+    // Adds to a corpus total, failing if it no longer fits in an int.
+    private static int add(int total, int amount, String name) {
+        if (total > Integer.MAX_VALUE - amount) {
+            throw new UncheckedIOException(
+                    new IOException(
+                            "The corpus has more than "
+                                    + Integer.MAX_VALUE
+                                    + " "
+                                    + name
+                                    + "."));
+        }
+        
+        return total + amount;
+    }
+    
+    private void addBigram(long key) {
+        if (bufferSize == buffer.length) {
+            try {
+                spill();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        
+        buffer[bufferSize++] = key;
+    }
+    
+    private void spill() throws IOException {
+        if (bufferSize == 0) {
+            return;
+        }
+        
+        Arrays.sort(buffer, 0, bufferSize);
+        childRuns.add(writeRun(buffer, bufferSize));
+        
+        for (int i = 0; i < bufferSize; i++) {
+            buffer[i] = (buffer[i] << 32) | (buffer[i] >>> 32);
+        }
+        
+        Arrays.sort(buffer, 0, bufferSize);
+        parentRuns.add(writeRun(buffer, bufferSize));
+        bufferSize = 0;
+    }
+    
+    // Writes the sorted keys with the counts of equal keys collapsed.
+    private Path writeRun(long[] keys, int size) throws IOException {
+        Path path = newFile();
+        
+        try (DataOutputStream out = newOutputStream(path)) {
+            int i = 0;
+            
+            while (i < size) {
+                int j = i + 1;
+                
+                while (j < size && keys[j] == keys[i]) {
+                    j++;
+                }
+                
+                out.writeLong(keys[i]);
+                out.writeInt(j - i);
+                i = j;
+            }
+        }
+        
+        numberOfSpilledBytes += Files.size(path);
+        return path;
+    }
+    
+    private Path merge(List<Path> runs) throws IOException {
+        List<Path> level = new ArrayList<>(runs);
+        
+        if (level.isEmpty()) {
+            Path path = newFile();
+            Files.createFile(path);
+            return path;
+        }
+        
+        while (level.size() > 1) {
+            List<Path> nextLevel = new ArrayList<>();
+            
+            for (int i = 0; i < level.size(); i += MAXIMUM_FAN_IN) {
+                List<Path> group =
+                        level.subList(i,
+                                      Math.min(level.size(),
+                                               i + MAXIMUM_FAN_IN));
+                
+                nextLevel.add(mergeGroup(group));
+                
+                for (Path path : group) {
+                    Files.delete(path);
+                }
+            }
+            
+            level = nextLevel;
+        }
+        
+        return level.get(0);
+    }
+    
+    private Path mergeGroup(List<Path> group) throws IOException {
+        Path path = newFile();
+        PriorityQueue<RunReader> queue =
+                new PriorityQueue<>(
+                        group.size(),
+                        Comparator.comparingLong(RunReader::getKey));
+        
+        try (DataOutputStream out = newOutputStream(path)) {
+            for (Path run : group) {
+                RunReader reader = new RunReader(run);
+                
+                if (reader.advance()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            
+            while (!queue.isEmpty()) {
+                long key = queue.peek().getKey();
+                long count = 0L;
+                
+                while (!queue.isEmpty() && queue.peek().getKey() == key) {
+                    RunReader reader = queue.poll();
+                    count += reader.getCount();
+                    
+                    if (count > Integer.MAX_VALUE) {
+                        throw new IOException(
+                                "A bigram occurs more than "
+                                        + Integer.MAX_VALUE
+                                        + " times.");
+                    }
+                    
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                
+                out.writeLong(key);
+                out.writeInt((int) count);
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+        
+        return path;
+    }
+    
+    private void fill(Path arcs,
+                      int[] offsets,
+                      int[] ids,
+                      int[] weights) throws IOException {
+        int[] index = new int[1];
+        
+        scan(arcs, (wordId, rowIds, rowWeights, length) -> {
+            System.arraycopy(rowIds, 0, ids, index[0], length);
+            System.arraycopy(rowWeights, 0, weights, index[0], length);
+            index[0] += length;
+            offsets[wordId + 1] = index[0];
+        });
+    }
+    
+    private void scan(Path arcs, WordGraphSnapshot.RowConsumer consumer)
+            throws IOException {
+        int[] ids = new int[words.length];
+        int[] weights = new int[words.length];
+        
+        try (RunReader reader = new RunReader(arcs)) {
+            boolean hasNext = reader.advance();
+            
+            for (int wordId = 0; wordId < words.length; wordId++) {
+                int length = 0;
+                
+                while (hasNext && (int) (reader.getKey() >>> 32) == wordId) {
+                    ids[length] = (int) reader.getKey();
+                    weights[length] = reader.getCount();
+                    length++;
+                    hasNext = reader.advance();
+                }
+                
+                consumer.accept(wordId, ids, weights, length);
+            }
+        }
+    }
+    
+    private Path newFile() {
+        return directory.resolve("run-" + numberOfFiles++ + ".bin");
+    }
+    
+    private static DataOutputStream newOutputStream(Path path)
+            throws IOException {
+        return new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path),
+                                         IO_BUFFER_SIZE));
+    }
+    
+    private static int toArrayLength(long length) throws IOException {
+        if (length > MAXIMUM_BUFFER_LENGTH) {
+            throw new IOException(
+                    "Too many arcs for an in-memory graph: " + length + ".");
+        }
+        
+        return (int) length;
+    }
+    
+    private static final class RunReader implements Closeable {
+        
+        private final DataInputStream in;
+        private long key;
+        private int count;
+        
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path),
+                                            IO_BUFFER_SIZE));
+        }
+        
+        long getKey() {
+            return key;
+        }
+        
+        int getCount() {
+            return count;
+        }
+        
+        boolean advance() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException ex) {
+                return false;
+            }
+            
+            count = in.readInt();
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples whole sentences of an exact length, or of a length within a range,
+ * from the bigram model of a word graph, conditioned on that length. A
+ * sentence starts with a word that starts some sentence of the corpus,
+ * follows the arcs in proportion to their weights and ends with the full
+ * stop, so every request is answered with one forward walk and no retries.
+ * <p>
+ * The walk is steered by the table {@code f[k][w]}: the probability that a
+ * walk from {@code w} reaches the full stop in exactly {@code k} words,
+ * counting both ends. {@code f[1]} is one at the full stop only, and
+ * {@code f[k][w]} is the sum of {@code P(c | w) * f[k - 1][c]} over the
+ * children {@code c} of {@code w}. The first word is drawn in proportion to
+ * its number of sentence starts times {@code f[n][w]}, and each following
+ * word in proportion to its arc weight times the entry of the remaining
+ * length. The tables are computed up to the longest length requested so
+ * far, one pass over the arcs per length, and kept for later requests.
+ * Every row is rescaled to a largest entry of one and its scale is kept as
+ * a logarithm, since the probabilities of long sentences underflow a
+ * {@code double}. The tables stop growing at the first length whose row is
+ * exactly zero, which no sentence has, and so no longer one either, and
+ * they may hold at most
+ * {@code MAXIMUM_NUMBER_OF_CELLS} entries in total, so the longest length
+ * that may be requested shrinks as the vocabulary grows.
+ */
+final class LengthConditionedSentenceSampler {
+    
+    private static final String END_OF_SENTENCE = ".";
+    
+    // Keeps the tables, 16 bytes per cell, at no more than 256 MiB.
+    private static final long MAXIMUM_NUMBER_OF_CELLS = 1L << 24;
+    
+    private final WordGraph graph;
+    
+    // pathProbabilities[k] is f[k] above divided by exp(logScales[k]), and
+    // cumulativeStartWeights[k] holds the prefix sums of the sentence starts
+    // weighted by pathProbabilities[k].
+    private volatile double[][] pathProbabilities = new double[1][];
+    private volatile double[][] cumulativeStartWeights = new double[1][];
+    private volatile double[] logScales = new double[1];
+    
+    // The longest length that some sentence has, once known.
+    private volatile int longestSentenceLength = Integer.MAX_VALUE;
+    
+    public LengthConditionedSentenceSampler(WordGraph graph) {
+        this.graph = graph;
+    }
+    
+    /**
+     * Samples a sentence of {@code minimumSentenceLength} to
+     * {@code maximumSentenceLength} words, both inclusive, ending with the
+     * full stop. Each length is chosen with its probability under the model.
+     */
+    public List<String> sampleSentence(int minimumSentenceLength,
+                                       int maximumSentenceLength,
+                                       RandomGenerator random) {
+        if (minimumSentenceLength < 1
+                || minimumSentenceLength > maximumSentenceLength) {
+            throw new IllegalArgumentException(
+                    "Bad sentence length range "
+                            + minimumSentenceLength
+                            + ".."
+                            + maximumSentenceLength
+                            + ".");
+        }
+        
+        int endOfSentenceId = graph.getWordId(END_OF_SENTENCE);
+        
+        if (endOfSentenceId == -1) {
+            throw new IllegalStateException(
+                    "No sentence ends with \"" + END_OF_SENTENCE + "\".");
+        }
+        
+        int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+        int upperLength = Math.min(maximumSentenceLength,
+                                   longestSentenceLength);
+        
+        if ((upperLength + 1L) * numberOfDistinctWords
+                > MAXIMUM_NUMBER_OF_CELLS) {
+            throw new IllegalStateException(
+                    "Sentences of more than "
+                            + (MAXIMUM_NUMBER_OF_CELLS
+                                    / numberOfDistinctWords - 1)
+                            + " words are not supported over "
+                            + numberOfDistinctWords
+                            + " distinct words.");
+        }
+        
+        ensureTables(upperLength, endOfSentenceId);
+        upperLength = Math.min(upperLength, longestSentenceLength);
+        double[][] probabilities = pathProbabilities;
+        double[][] startWeights = cumulativeStartWeights;
+        double[] scales = logScales;
+        double maximumLogWeight = Double.NEGATIVE_INFINITY;
+        
+        for (int length = minimumSentenceLength;
+                length <= upperLength;
+                length++) {
+            maximumLogWeight =
+                    Math.max(maximumLogWeight,
+                             getLogWeight(startWeights, scales, length));
+        }
+        
+        if (maximumLogWeight == Double.NEGATIVE_INFINITY) {
+            throw new IllegalStateException(
+                    minimumSentenceLength == maximumSentenceLength ?
+                    "No sentence has exactly "
+                            + minimumSentenceLength
+                            + " words." :
+                    "No sentence has "
+                            + minimumSentenceLength
+                            + " to "
+                            + maximumSentenceLength
+                            + " words.");
+        }
+        
+        // The weights of the lengths relative to the largest one.
+        double totalWeight = 0.0;
+        
+        for (int length = minimumSentenceLength;
+                length <= upperLength;
+                length++) {
+            totalWeight += Math.exp(getLogWeight(startWeights, scales, length)
+                                            - maximumLogWeight);
+        }
+        
+        double target = random.nextDouble() * totalWeight;
+        int length = -1;
+        
+        for (int candidateLength = minimumSentenceLength;
+                candidateLength <= upperLength;
+                candidateLength++) {
+            double weight =
+                    Math.exp(getLogWeight(startWeights,
+                                          scales,
+                                          candidateLength)
+                                     - maximumLogWeight);
+            
+            if (weight > 0.0) {
+                length = candidateLength;
+                target -= weight;
+                
+                if (target < 0.0) {
+                    break;
+                }
+            }
+        }
+        
+        int wordId = sampleStart(startWeights[length], random);
+        List<String> sentence = new ArrayList<>(length);
+        sentence.add(graph.getWord(wordId));
+        
+        for (int remaining = length - 1; remaining > 0; remaining--) {
+            wordId = sampleChild(wordId, probabilities[remaining], random);
+            sentence.add(graph.getWord(wordId));
+        }
+        
+        return sentence;
+    }
+    
+    // Returns the log of the total start weight of the sentences of length
+    // words, on the same scale for all lengths.
+    private static double getLogWeight(double[][] startWeights,
+                                       double[] scales,
+                                       int length) {
+        double[] cumulativeWeights = startWeights[length];
+        return Math.log(cumulativeWeights[cumulativeWeights.length - 1])
+                + scales[length];
+    }
+    
+    // Returns the first word whose cumulative weight exceeds a uniform
+    // target below the total weight.
+    private static int sampleStart(double[] cumulativeWeights,
+                                   RandomGenerator random) {
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        double totalWeight = cumulativeWeights[high];
+        double target = Math.min(random.nextDouble() * totalWeight,
+                                 Math.nextDown(totalWeight));
+        
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            
+            if (cumulativeWeights[middle] > target) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        
+        return low;
+    }
+    
+    // Samples a child of wordId in proportion to its arc weight times its
+    // probability of ending the sentence in the remaining number of words.
+    private int sampleChild(int wordId,
+                            double[] probabilities,
+                            RandomGenerator random) {
+        int numberOfChildren = graph.getNumberOfChildren(wordId);
+        double totalWeight = 0.0;
+        
+        for (int i = 0; i < numberOfChildren; i++) {
+            totalWeight += graph.getChildWeight(wordId, i)
+                    * probabilities[graph.getChild(wordId, i)];
+        }
+        
+        double target = random.nextDouble() * totalWeight;
+        int childId = -1;
+        
+        for (int i = 0; i < numberOfChildren; i++) {
+            double weight = graph.getChildWeight(wordId, i)
+                    * probabilities[graph.getChild(wordId, i)];
+            
+            if (weight > 0.0) {
+                childId = graph.getChild(wordId, i);
+                target -= weight;
+                
+                if (target < 0.0) {
+                    break;
+                }
+            }
+        }
+        
+        return childId;
+    }
+    
+    private void ensureTables(int maximumSentenceLength, int endOfSentenceId) {
+        if (maximumSentenceLength < pathProbabilities.length) {
+            return;
+        }
+        
+        synchronized (this) {
+            int fromLength = pathProbabilities.length;
+            
+            if (maximumSentenceLength < fromLength
+                    || fromLength > longestSentenceLength) {
+                return;
+            }
+            
+            double[][] probabilities =
+                    Arrays.copyOf(pathProbabilities,
+                                  maximumSentenceLength + 1);
+            
+            double[][] startWeights =
+                    Arrays.copyOf(cumulativeStartWeights,
+                                  maximumSentenceLength + 1);
+            
+            double[] scales =
+                    Arrays.copyOf(logScales, maximumSentenceLength + 1);
+            
+            for (int length = fromLength;
+                    length <= maximumSentenceLength;
+                    length++) {
+                probabilities[length] =
+                        length == 1 ?
+                        computeEndProbabilities(endOfSentenceId) :
+                        computePathProbabilities(probabilities[length - 1],
+                                                 endOfSentenceId);
+                
+                double maximum = getMaximum(probabilities[length]);
+                
+                if (maximum == 0.0) {
+                    // No longer path exists either.
+                    probabilities = Arrays.copyOf(probabilities, length);
+                    startWeights = Arrays.copyOf(startWeights, length);
+                    scales = Arrays.copyOf(scales, length);
+                    longestSentenceLength = length - 1;
+                    break;
+                }
+                
+                for (int wordId = 0;
+                        wordId < probabilities[length].length;
+                        wordId++) {
+                    probabilities[length][wordId] /= maximum;
+                }
+                
+                scales[length] = length == 1 ?
+                                 0.0 :
+                                 scales[length - 1] + Math.log(maximum);
+                
+                startWeights[length] =
+                        computeCumulativeStartWeights(probabilities[length]);
+            }
+            
+            // The start weights and the scales are published first, so that
+            // a reader that sees the longer path tables also sees them.
+            cumulativeStartWeights = startWeights;
+            logScales = scales;
+            pathProbabilities = probabilities;
+        }
+    }
+    
+    private static double getMaximum(double[] probabilities) {
+        double maximum = 0.0;
+        
+        for (double probability : probabilities) {
+            maximum = Math.max(maximum, probability);
+        }
+        
+        return maximum;
+    }
+    
+    private double[] computeEndProbabilities(int endOfSentenceId) {
+        double[] probabilities = new double[graph.getNumberOfDistinctWords()];
+        probabilities[endOfSentenceId] = 1.0;
+        return probabilities;
+    }
+    
+    private double[] computePathProbabilities(double[] previous,
+                                              int endOfSentenceId) {
+        double[] probabilities = new double[previous.length];
+        
+        for (int wordId = 0; wordId < previous.length; wordId++) {
+            // The full stop only ends a sentence.
+            if (wordId == endOfSentenceId) {
+                continue;
+            }
+            
+            int numberOfChildren = graph.getNumberOfChildren(wordId);
+            double weight = 0.0;
+            
+            for (int i = 0; i < numberOfChildren; i++) {
+                weight += graph.getChildWeight(wordId, i)
+                        * previous[graph.getChild(wordId, i)];
+            }
+            
+            if (weight > 0.0) {
+                probabilities[wordId] =
+                        weight / graph.getTotalChildWeight(wordId);
+            }
+        }
+        
+        return probabilities;
+    }
+    
+    private double[] computeCumulativeStartWeights(double[] probabilities) {
+        double[] cumulativeWeights = new double[probabilities.length];
+        double totalWeight = 0.0;
+        
+        for (int wordId = 0; wordId < probabilities.length; wordId++) {
+            totalWeight += graph.getNumberOfStarts(wordId)
+                    * probabilities[wordId];
+            
+            cumulativeWeights[wordId] = totalWeight;
+        }
+        
+        return cumulativeWeights;
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the current version of the word graph and its sentence sampler.
+ * Ingesting new sentences builds the next version on the side and then
+ * publishes it with a single volatile write, so that readers holding the
+ * previous version keep working on it undisturbed.
+ */
+final class LiveSentenceModel {
+    
+    public static final class Version {
+        private final int number;
+        private final WordGraph graph;
+        private final SentenceSampler sampler;
+        private final AnchoredSentenceSampler anchoredSampler;
+        private final LengthConditionedSentenceSampler lengthSampler;
+        private final boolean smoothed;
+        private volatile TopNeighbourIndex topNeighbourIndex;
+        private volatile SentenceScorer scorer;
+        
+        private Version(int number,
+                        WordGraph graph,
+                        SentenceSampler sampler,
+                        boolean smoothed) {
+            this.number = number;
+            this.graph = graph;
+            this.sampler = sampler;
+            this.smoothed = smoothed;
+            this.anchoredSampler = new AnchoredSentenceSampler(graph);
+            this.lengthSampler = new LengthConditionedSentenceSampler(graph);
+        }
+        
+        public int getNumber() {
+            return number;
+        }
+        
+        public WordGraph getGraph() {
+            return graph;
+        }
+        
+        public SentenceSampler getSampler() {
+            return sampler;
+        }
+        
+        public AnchoredSentenceSampler getAnchoredSampler() {
+            return anchoredSampler;
+        }
+        
+        public LengthConditionedSentenceSampler getLengthSampler() {
+            return lengthSampler;
+        }
+        
+        /**
+         * Returns the neighbour index of this version, building it on the
+         * first call.
+         */
+        public TopNeighbourIndex getTopNeighbourIndex() {
+            TopNeighbourIndex result = topNeighbourIndex;
+            
+            if (result == null) {
+                synchronized (this) {
+                    result = topNeighbourIndex;
+                    
+                    if (result == null) {
+                        result = topNeighbourIndex = 
+                                new TopNeighbourIndex(graph);
+                    }
+                }
+            }
+            
+            return result;
+        }
+        
+        /**
+         * Returns the scorer of this version, building it on the first call.
+         */
+        public SentenceScorer getScorer() {
+            SentenceScorer result = scorer;
+            
+            if (result == null) {
+                synchronized (this) {
+                    result = scorer;
+                    
+                    if (result == null) {
+                        result = scorer = new SentenceScorer(graph, smoothed);
+                    }
+                }
+            }
+            
+            return result;
+        }
+    }
+    
+    public static final class IngestResult {
+        private final Version version;
+        private final int numberOfRecomputedRows;
+        
+        private IngestResult(Version version, int numberOfRecomputedRows) {
+            this.version = version;
+            this.numberOfRecomputedRows = numberOfRecomputedRows;
+        }
+        
+        public Version getVersion() {
+            return version;
+        }
+        
+        public int getNumberOfRecomputedRows() {
+            return numberOfRecomputedRows;
+        }
+    }
+    
+    private final NGramModel.Builder ngramModelBuilder;
+    private final PruningSummary pruningSummary;
+    private final boolean smoothed;
+    private volatile Version currentVersion;
+    
+    public LiveSentenceModel(WordGraph graph) {
+        this(graph, null);
+    }
+    
+    public LiveSentenceModel(WordGraph graph, PruningSummary pruningSummary) {
+        this(graph, pruningSummary, false);
+    }
+    
+    /**
+     * Creates a model over a graph pruned as described by 
+     * {@code pruningSummary}, or over an unpruned one if it is {@code null}. 
+     * Ingesting into a graph that has the unknown word maps the words 
+     * outside its vocabulary to the unknown word. The scorers of the 
+     * versions are smoothed with Kneser-Ney if {@code smoothed} is 
+     * {@code true}.
+     */
+    public LiveSentenceModel(WordGraph graph, 
+                             PruningSummary pruningSummary,
+                             boolean smoothed) {
+        this.ngramModelBuilder = null;
+        this.pruningSummary = pruningSummary;
+        this.smoothed = smoothed;
+        this.currentVersion = new Version(1, 
+                                          graph, 
+                                          new WordGraphSentenceSampler(graph),
+                                          smoothed);
+    }
+    
+    public LiveSentenceModel(WordGraph graph,
+                             NGramModel.Builder ngramModelBuilder,
+                             NGramModel ngramModel,
+                             boolean smoothed) {
+        this.ngramModelBuilder = ngramModelBuilder;
+        this.pruningSummary = null;
+        this.smoothed = smoothed;
+        this.currentVersion = new Version(1, graph, ngramModel, smoothed);
+    }
+    
+    public Version getCurrentVersion() {
+        return currentVersion;
+    }
+    
+    /**
+     * Returns what was pruned from the initial graph, or {@code null} if it 
+     * was not pruned.
+     */
+    public PruningSummary getPruningSummary() {
+        return pruningSummary;
+    }
+    
+    /**
+     * Merges {@code sentences} into the current graph and publishes the
+     * result as the next version. The next graph is a 
+     * {@link CompactWordGraph}, copied off the heap if the current graph is 
+     * off the heap, so an object graph becomes a compact one on the first 
+     * ingest.
+     */
+    public synchronized IngestResult ingest(List<List<String>> sentences) {
+        Version version = currentVersion;
+        
+        if (pruningSummary != null 
+                && version.getGraph()
+                          .getWordId(PruningSummary.UNKNOWN_WORD) != -1) {
+            sentences = mapUnknownWords(version.getGraph(), sentences);
+        }
+        
+        WordGraphMerger merger = new WordGraphMerger(version.getGraph());
+        merger.addSentences(sentences);
+        WordGraph graph = merger.merge();
+        
+        if (version.getGraph() instanceof OffHeapWordGraph) {
+            graph = OffHeapWordGraph.copyOf(graph);
+        }
+        
+        SentenceSampler sampler;
+        
+        if (ngramModelBuilder != null) {
+            ngramModelBuilder.addSentences(sentences);
+            sampler = ngramModelBuilder.build();
+        } else {
+            sampler = new WordGraphSentenceSampler(graph);
+        }
+        
+        currentVersion = 
+                new Version(version.getNumber() + 1, graph, sampler, smoothed);
+        return new IngestResult(currentVersion,
+                                merger.getNumberOfRecomputedRows());
+    }
+    
+    private static List<List<String>> 
+        mapUnknownWords(WordGraph graph, List<List<String>> sentences) {
+        List<List<String>> mappedSentences = new ArrayList<>(sentences.size());
+        
+        for (List<String> sentence : sentences) {
+            List<String> mappedSentence = new ArrayList<>(sentence.size());
+            
+            for (String word : sentence) {
+                mappedSentence.add(graph.getWordId(word) != -1 ? 
+                                   word : 
+                                   PruningSummary.UNKNOWN_WORD);
+            }
+            
+            mappedSentences.add(mappedSentence);
+        }
+        
+        return mappedSentences;
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from {@code long} keys to {@code int} values
+ * with linear probing. Meant for accumulating counts without boxing.
+ */
+final class LongIntHashMap {
+    
+    interface EntryConsumer {
+        void accept(long key, int value);
+    }
+    
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float MAXIMUM_LOAD_FACTOR = 0.5f;
+    
+    private long[] keys;
+    private int[] values;
+    private boolean[] occupied;
+    private int size;
+    private int mask;
+    
+    public LongIntHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+    
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(
+                Math.max(DEFAULT_INITIAL_CAPACITY,
+                         (int) (expectedSize / MAXIMUM_LOAD_FACTOR)) - 1) << 1;
+        
+        allocate(capacity);
+    }
+    
+    public int get(long key) {
+        int slot = findSlot(key);
+        return occupied[slot] ? values[slot] : 0;
+    }
+    
+    public boolean containsKey(long key) {
+        return occupied[findSlot(key)];
+    }
+    
+    public void put(long key, int value) {
+        int slot = findSlot(key);
+        
+        if (!occupied[slot]) {
+            occupy(slot, key);
+            values[slot] = value;
+            growIfNeeded();
+            return;
+        }
+        
+        values[slot] = value;
+    }
+    
+    public int add(long key, int delta) {
+        int slot = findSlot(key);
+        
+        if (!occupied[slot]) {
+            occupy(slot, key);
+            values[slot] = delta;
+            growIfNeeded();
+            return delta;
+        }
+        
+        return values[slot] += delta;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (occupied[slot]) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+    
+    public long[] getKeys() {
+        long[] result = new long[size];
+        int index = 0;
+        
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (occupied[slot]) {
+                result[index++] = keys[slot];
+            }
+        }
+        
+        return result;
+    }
+    
+    public long[] getSortedKeys() {
+        long[] result = getKeys();
+        Arrays.sort(result);
+        return result;
+    }
+    
+    private void occupy(int slot, long key) {
+        occupied[slot] = true;
+        keys[slot] = key;
+        size++;
+    }
+    
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        
+        while (occupied[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        
+        return slot;
+    }
+    
+    private void growIfNeeded() {
+        if (size <= keys.length * MAXIMUM_LOAD_FACTOR) {
+            return;
+        }
+        
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldOccupied = occupied;
+        allocate(oldKeys.length << 1);
+        
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldOccupied[slot]) {
+                int newSlot = findSlot(oldKeys[slot]);
+                occupy(newSlot, oldKeys[slot]);
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        occupied = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+    
+    private static int hash(long key) {
+        // The finalizer of MurmurHash3.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
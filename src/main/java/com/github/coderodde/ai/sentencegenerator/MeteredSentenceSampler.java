@@ -0,0 +1,29 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Records the number of words and the sampling time of every sentence drawn
+ * from the wrapped sampler into {@link Metrics}.
+ */
+final class MeteredSentenceSampler implements SentenceSampler {
+    
+    private final SentenceSampler sampler;
+    
+    public MeteredSentenceSampler(SentenceSampler sampler) {
+        this.sampler = sampler;
+    }
+    
+    @Override
+    public List<String> sampleSentence(int maximumSentenceLength,
+                                       RandomGenerator random) {
+        long startTime = System.nanoTime();
+        List<String> sentence =
+                sampler.sampleSentence(maximumSentenceLength, random);
+        
+        Metrics.recordGeneratedSentence(sentence.size(),
+                                        System.nanoTime() - startTime);
+        return sentence;
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the process-wide timings and sizes reported by the
+ * {@code metrics} command: the duration of each preprocessing stage, the
+ * sizes of the current word graph, and latency histograms of the
+ * {@code gen} and {@code stat} commands.
+ */
+final class Metrics {
+    
+    private static final class Stage {
+        private long count;
+        private long totalNanos;
+        private long maximumNanos;
+    }
+    
+    private static final Map<String, Stage> STAGES = new LinkedHashMap<>();
+    
+    private static final Histogram GEN_STEPS_PER_SENTENCE = new Histogram();
+    private static final Histogram GEN_NANOS_PER_SENTENCE = new Histogram();
+    private static final Histogram STAT_NANOS = new Histogram();
+    
+    private static volatile int numberOfSentences;
+    private static volatile long numberOfWords;
+    private static volatile int numberOfDistinctWords;
+    private static volatile long numberOfArcs;
+    
+    private Metrics() {
+    
+    }
+    
+    public static synchronized void recordStage(String name, long nanos) {
+        Stage stage = STAGES.computeIfAbsent(name, key -> new Stage());
+        stage.count++;
+        stage.totalNanos += nanos;
+        stage.maximumNanos = Math.max(stage.maximumNanos, nanos);
+    }
+    
+    public static void recordGraph(WordGraph graph) {
+        long numberOfArcs = 0L;
+        
+        for (int wordId = 0;
+                wordId < graph.getNumberOfDistinctWords();
+                wordId++) {
+            numberOfArcs += graph.getNumberOfChildren(wordId);
+        }
+        
+        Metrics.numberOfSentences = graph.getNumberOfSentences();
+        Metrics.numberOfWords = graph.getNumberOfWords();
+        Metrics.numberOfDistinctWords = graph.getNumberOfDistinctWords();
+        Metrics.numberOfArcs = numberOfArcs;
+    }
+    
+    public static void recordGeneratedSentence(int steps, long nanos) {
+        GEN_STEPS_PER_SENTENCE.record(steps);
+        GEN_NANOS_PER_SENTENCE.record(nanos);
+    }
+    
+    public static void recordStat(long nanos) {
+        STAT_NANOS.record(nanos);
+    }
+    
+    public static long toMillis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+    
+    public static void print(PrintStream out) {
+        out.println(">>> Stages:");
+        
+        synchronized (Metrics.class) {
+            for (Map.Entry<String, Stage> entry : STAGES.entrySet()) {
+                Stage stage = entry.getValue();
+                out.println(
+                        String.format(
+                                Locale.ROOT,
+                                ">>>   %-24s count = %d, "
+                                        + "total = %.3f ms, max = %.3f ms",
+                                entry.getKey(),
+                                stage.count,
+                                stage.totalNanos / 1e6,
+                                stage.maximumNanos / 1e6));
+            }
+        }
+        
+        out.println(">>> Counters:");
+        out.println(">>>   sentences      = " + numberOfSentences);
+        out.println(">>>   tokens         = " + numberOfWords);
+        out.println(">>>   distinct words = " + numberOfDistinctWords);
+        out.println(">>>   edges          = " + numberOfArcs);
+        out.println(">>> Histograms:");
+        print("gen steps/sentence", GEN_STEPS_PER_SENTENCE, 1.0, "", out);
+        print("gen time/sentence", GEN_NANOS_PER_SENTENCE, 1e3, " us", out);
+        print("stat latency", STAT_NANOS, 1e3, " us", out);
+    }
+    
+    private static void print(String name,
+                              Histogram histogram,
+                              double divisor,
+                              String unit,
+                              PrintStream out) {
+        out.println(
+                String.format(
+                        Locale.ROOT,
+                        ">>>   %-24s count = %d, mean = %.3f%s, "
+                                + "p50 = %.3f%s, p90 = %.3f%s, "
+                                + "p99 = %.3f%s, max = %.3f%s",
+                        name,
+                        histogram.getCount(),
+                        histogram.getMean() / divisor,
+                        unit,
+                        histogram.getPercentile(50.0) / divisor,
+                        unit,
+                        histogram.getPercentile(90.0) / divisor,
+                        unit,
+                        histogram.getPercentile(99.0) / divisor,
+                        unit,
+                        histogram.getMaximum() / divisor,
+                        unit));
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * An order-k Markov model over words. Sentences are generated backwards,
+ * like in the word graph: each word is sampled from the distribution
+ * conditioned on the k - 1 words that follow it. The end of a sentence is
+ * padded with boundary markers, and sampling the boundary marker ends the
+ * sentence at its natural beginning.
+ * <p>
+ * The contexts are kept in an open-addressing hash table over a flat
+ * {@code int} array of word IDs, and the distributions of all contexts in
+ * one compressed sparse row structure with alias tables, so that a distinct
+ * context costs {@code 4 * (k - 1)} bytes plus a hash slot and a row offset.
+ */
+final class NGramModel implements SentenceSampler {
+    
+    private static final int BOUNDARY_ID = 0;
+    private static final int EMPTY_SLOT = -1;
+    private static final int INITIAL_NUMBER_OF_CONTEXTS = 16;
+    
+    public static final class Builder {
+        
+        private final int contextLength;
+        private final SymbolTable symbolTable = new SymbolTable();
+        private final LongIntHashMap counts = new LongIntHashMap();
+        private int[] contextWords;
+        private int[] contextSlots;
+        private int numberOfContexts;
+        private int[] paddedSentence = new int[16];
+        
+        public Builder(int order) {
+            if (order < 2) {
+                throw new IllegalArgumentException(
+                        "The order must be at least 2. Received " + order);
+            }
+            
+            this.contextLength = order - 1;
+            this.contextWords =
+                    new int[INITIAL_NUMBER_OF_CONTEXTS * contextLength];
+            
+            this.contextSlots = new int[2 * INITIAL_NUMBER_OF_CONTEXTS];
+            Arrays.fill(contextSlots, EMPTY_SLOT);
+        }
+        
+        public void addSentences(List<List<String>> sentenceList) {
+            for (List<String> sentence : sentenceList) {
+                addSentence(sentence);
+            }
+        }
+        
+        public void addSentence(List<String> sentence) {
+            int paddedLength = sentence.size() + 1 + contextLength;
+            
+            if (paddedSentence.length < paddedLength) {
+                paddedSentence = new int[2 * paddedLength];
+            }
+            
+            paddedSentence[0] = BOUNDARY_ID;
+            
+            for (int i = 0; i < sentence.size(); i++) {
+                paddedSentence[i + 1] = getWordId(sentence.get(i));
+            }
+            
+            Arrays.fill(paddedSentence,
+                        sentence.size() + 1,
+                        paddedLength,
+                        BOUNDARY_ID);
+            
+            for (int i = 0; i <= sentence.size(); i++) {
+                int contextIndex = getContextIndex(paddedSentence, i + 1);
+                counts.add(((long) contextIndex << 32) | paddedSentence[i], 1);
+            }
+        }
+        
+        public NGramModel build() {
+            long[] keys = counts.getSortedKeys();
+            int[] rowOffsets = new int[numberOfContexts + 1];
+            int[] predictedWordIds = new int[keys.length];
+            double[] weights = new double[keys.length];
+            
+            for (int i = 0; i < keys.length; i++) {
+                rowOffsets[(int) (keys[i] >>> 32) + 1]++;
+                predictedWordIds[i] = (int) keys[i];
+                weights[i] = counts.get(keys[i]);
+            }
+            
+            for (int i = 0; i < numberOfContexts; i++) {
+                rowOffsets[i + 1] += rowOffsets[i];
+            }
+            
+            double[] probabilities = new double[keys.length];
+            int[] aliases = new int[keys.length];
+            
+            for (int i = 0; i < numberOfContexts; i++) {
+                AliasProbabilityDistribution.buildAliasTable(
+                        weights,
+                        rowOffsets[i],
+                        rowOffsets[i + 1],
+                        probabilities,
+                        aliases);
+            }
+            
+            return new NGramModel(
+                    contextLength,
+                    getWords(),
+                    Arrays.copyOf(contextWords,
+                                  numberOfContexts * contextLength),
+                    contextSlots.clone(),
+                    rowOffsets,
+                    predictedWordIds,
+                    probabilities,
+                    aliases);
+        }
+        
+        private int getWordId(String word) {
+            // The ID 0 is taken by the boundary marker.
+            return symbolTable.getOrAddId(word) + 1;
+        }
+        
+        private String[] getWords() {
+            String[] words = new String[symbolTable.size() + 1];
+            
+            for (int i = 0; i < symbolTable.size(); i++) {
+                words[i + 1] = symbolTable.getSymbol(i);
+            }
+            
+            return words;
+        }
+        
+        private int getContextIndex(int[] array, int offset) {
+            int slot = findSlot(contextSlots,
+                                contextWords,
+                                contextLength,
+                                array,
+                                offset);
+            
+            if (contextSlots[slot] != EMPTY_SLOT) {
+                return contextSlots[slot];
+            }
+            
+            if ((numberOfContexts + 1) * contextLength > contextWords.length) {
+                contextWords = Arrays.copyOf(contextWords,
+                                             2 * contextWords.length);
+            }
+            
+            System.arraycopy(array,
+                             offset,
+                             contextWords,
+                             numberOfContexts * contextLength,
+                             contextLength);
+            
+            contextSlots[slot] = numberOfContexts++;
+            
+            if (2 * numberOfContexts > contextSlots.length) {
+                rehash();
+            }
+            
+            return numberOfContexts - 1;
+        }
+        
+        private void rehash() {
+            contextSlots = new int[2 * contextSlots.length];
+            Arrays.fill(contextSlots, EMPTY_SLOT);
+            
+            for (int i = 0; i < numberOfContexts; i++) {
+                int slot = findSlot(contextSlots,
+                                    contextWords,
+                                    contextLength,
+                                    contextWords,
+                                    i * contextLength);
+                
+                contextSlots[slot] = i;
+            }
+        }
+    }
+    
+    private final int contextLength;
+    private final String[] words;
+    private final int[] contextWords;
+    private final int[] contextSlots;
+    private final int[] rowOffsets;
+    private final int[] predictedWordIds;
+    private final double[] probabilities;
+    private final int[] aliases;
+    
+    private NGramModel(int contextLength,
+                       String[] words,
+                       int[] contextWords,
+                       int[] contextSlots,
+                       int[] rowOffsets,
+                       int[] predictedWordIds,
+                       double[] probabilities,
+                       int[] aliases) {
+        this.contextLength = contextLength;
+        this.words = words;
+        this.contextWords = contextWords;
+        this.contextSlots = contextSlots;
+        this.rowOffsets = rowOffsets;
+        this.predictedWordIds = predictedWordIds;
+        this.probabilities = probabilities;
+        this.aliases = aliases;
+    }
+    
+    public int getOrder() {
+        return contextLength + 1;
+    }
+    
+    public int getNumberOfContexts() {
+        return rowOffsets.length - 1;
+    }
+    
+    @Override
+    public List<String> sampleSentence(int maximumSentenceLength,
+                                       RandomGenerator random) {
+        // context[0] is the word right after the one being sampled.
+        int[] context = new int[contextLength];
+        List<String> sentence = new ArrayList<>();
+        
+        while (sentence.size() < maximumSentenceLength) {
+            int slot = findSlot(contextSlots,
+                                contextWords,
+                                contextLength,
+                                context,
+                                0);
+            
+            int contextIndex = contextSlots[slot];
+            
+            if (contextIndex == EMPTY_SLOT) {
+                break;
+            }
+            
+            int fromIndex = rowOffsets[contextIndex];
+            int toIndex = rowOffsets[contextIndex + 1];
+            int wordId =
+                    predictedWordIds[
+                            fromIndex
+                          + AliasProbabilityDistribution.sampleIndex(
+                                  probabilities,
+                                  aliases,
+                                  fromIndex,
+                                  toIndex,
+                                  random.nextDouble())];
+            
+            if (wordId == BOUNDARY_ID) {
+                break;
+            }
+            
+            sentence.add(words[wordId]);
+            System.arraycopy(context, 0, context, 1, contextLength - 1);
+            context[0] = wordId;
+        }
+        
+        Collections.<String>reverse(sentence);
+        return sentence;
+    }
+    
+    // Returns the slot holding the context array[offset .. offset +
+    // contextLength - 1], or the empty slot where it would be inserted.
+    private static int findSlot(int[] contextSlots,
+                                int[] contextWords,
+                                int contextLength,
+                                int[] array,
+                                int offset) {
+        int hash = 1;
+        
+        for (int i = 0; i < contextLength; i++) {
+            hash = 31 * hash + array[offset + i];
+        }
+        
+        hash *= 0x9e3779b9;
+        int mask = contextSlots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        
+        while (contextSlots[slot] != EMPTY_SLOT) {
+            if (Arrays.equals(contextWords,
+                              contextSlots[slot] * contextLength,
+                              (contextSlots[slot] + 1) * contextLength,
+                              array,
+                              offset,
+                              offset + contextLength)) {
+                return slot;
+            }
+            
+            slot = (slot + 1) & mask;
+        }
+        
+        return slot;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed-size block of memory outside the Java heap, addressed by element
+ * index as an array of ints, longs, doubles or bytes. It is made of direct
+ * byte buffers of at most 1 GiB each, so that it may exceed the 2 GiB limit
+ * of a single buffer. The values are big-endian like in the snapshot format,
+ * so that snapshot sections are copied in verbatim.
+ * <p>
+ * The memory counts against {@code -XX:MaxDirectMemorySize} and is released
+ * once the array becomes unreachable.
+ */
+final class OffHeapArray {
+    
+    // Divisible by 8 so that no element straddles two chunks.
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    
+    private final ByteBuffer[] chunks;
+    private final long sizeInBytes;
+    
+    OffHeapArray(long sizeInBytes) {
+        int numberOfChunks = (int) ((sizeInBytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+        this.chunks = new ByteBuffer[numberOfChunks];
+        this.sizeInBytes = sizeInBytes;
+        
+        for (int i = 0; i < numberOfChunks; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(
+                    (int) Math.min(sizeInBytes - ((long) i << CHUNK_SHIFT),
+                                   1L << CHUNK_SHIFT));
+        }
+    }
+    
+    public static OffHeapArray ofInts(long length) {
+        return new OffHeapArray(length * Integer.BYTES);
+    }
+    
+    public static OffHeapArray ofLongs(long length) {
+        return new OffHeapArray(length * Long.BYTES);
+    }
+    
+    public static OffHeapArray ofDoubles(long length) {
+        return new OffHeapArray(length * Double.BYTES);
+    }
+    
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+    
+    public int getInt(long index) {
+        long offset = index * Integer.BYTES;
+        return chunk(offset).getInt(position(offset));
+    }
+    
+    public void setInt(long index, int value) {
+        long offset = index * Integer.BYTES;
+        chunk(offset).putInt(position(offset), value);
+    }
+    
+    public long getLong(long index) {
+        long offset = index * Long.BYTES;
+        return chunk(offset).getLong(position(offset));
+    }
+    
+    public void setLong(long index, long value) {
+        long offset = index * Long.BYTES;
+        chunk(offset).putLong(position(offset), value);
+    }
+    
+    public double getDouble(long index) {
+        long offset = index * Double.BYTES;
+        return chunk(offset).getDouble(position(offset));
+    }
+    
+    public void setDouble(long index, double value) {
+        long offset = index * Double.BYTES;
+        chunk(offset).putDouble(position(offset), value);
+    }
+    
+    /**
+     * Copies {@code length} bytes starting at the byte offset
+     * {@code fromOffset} into {@code bytes}.
+     */
+    public void getBytes(long fromOffset, byte[] bytes, int length) {
+        copyBytes(fromOffset, bytes, length, false);
+    }
+    
+    public void setBytes(long fromOffset, byte[] bytes, int length) {
+        copyBytes(fromOffset, bytes, length, true);
+    }
+    
+    /**
+     * Fills the whole array from {@code channel} starting at
+     * {@code position}, and returns the position right after the copied
+     * bytes.
+     */
+    public long read(FileChannel channel, long position) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            chunk.clear();
+            chunk.put(channel.map(FileChannel.MapMode.READ_ONLY,
+                                  position,
+                                  chunk.capacity()));
+            chunk.clear();
+            position += chunk.capacity();
+        }
+        
+        return position;
+    }
+    
+    private void copyBytes(long fromOffset,
+                           byte[] bytes,
+                           int length,
+                           boolean toChunks) {
+        int index = 0;
+        
+        while (index < length) {
+            long offset = fromOffset + index;
+            ByteBuffer chunk = chunk(offset);
+            int position = position(offset);
+            int chunkLength = Math.min(length - index,
+                                       chunk.capacity() - position);
+            
+            if (toChunks) {
+                chunk.put(position, bytes, index, chunkLength);
+            } else {
+                chunk.get(position, bytes, index, chunkLength);
+            }
+            
+            index += chunkLength;
+        }
+    }
+    
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)];
+    }
+    
+    private static int position(long offset) {
+        return (int) (offset & CHUNK_MASK);
+    }
+}
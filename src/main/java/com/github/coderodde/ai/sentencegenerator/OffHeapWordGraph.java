@@ -0,0 +1,435 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.random.RandomGenerator;
+
+/**
+ * An immutable word graph in the compressed sparse row format of
+ * {@link CompactWordGraph} whose vocabulary, arcs, alias tables, total
+ * weights and sentence start counts all live in {@link OffHeapArray}s. The
+ * heap holds a constant number of objects no matter how large the graph is,
+ * so the graph adds nothing to the marking work of the garbage collector.
+ * Sampling and lookups read the arrays directly; only {@link #getWord(int)}
+ * and {@link #getWordId(String)} allocate, to decode the UTF-8 words.
+ * <p>
+ * The row and word offsets are ints, as in the snapshot format that is
+ * loaded into them as is, so a graph may have at most
+ * {@link Integer#MAX_VALUE} arcs in each direction and as many bytes of
+ * words. Larger graphs are rejected when copied.
+ */
+final class OffHeapWordGraph implements AliasWordGraph {
+    
+    /**
+     * The arcs of one direction.
+     */
+    static final class Rows {
+        
+        private final OffHeapArray offsets;
+        private final OffHeapArray ids;
+        private final OffHeapArray weights;
+        private final OffHeapArray probabilities;
+        private final OffHeapArray aliases;
+        private final OffHeapArray totalWeights;
+        
+        Rows(OffHeapArray offsets,
+             OffHeapArray ids,
+             OffHeapArray weights,
+             OffHeapArray probabilities,
+             OffHeapArray aliases,
+             int numberOfDistinctWords) {
+            this.offsets = offsets;
+            this.ids = ids;
+            this.weights = weights;
+            this.probabilities = probabilities;
+            this.aliases = aliases;
+            this.totalWeights = OffHeapArray.ofLongs(numberOfDistinctWords);
+            
+            for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+                long totalWeight = 0L;
+                int toIndex = offsets.getInt(wordId + 1);
+                
+                for (int i = offsets.getInt(wordId); i < toIndex; i++) {
+                    totalWeight += weights.getInt(i);
+                }
+                
+                totalWeights.setLong(wordId, totalWeight);
+            }
+        }
+        
+        /**
+         * Copies the rows visited by {@code scanner} and builds their alias
+         * tables.
+         */
+        static Rows copyOf(WordGraphSnapshot.ArcScanner scanner,
+                           int numberOfDistinctWords,
+                           long numberOfArcs) throws IOException {
+            OffHeapArray offsets =
+                    OffHeapArray.ofInts(numberOfDistinctWords + 1L);
+            
+            OffHeapArray ids = OffHeapArray.ofInts(numberOfArcs);
+            OffHeapArray weights = OffHeapArray.ofInts(numberOfArcs);
+            OffHeapArray probabilities = OffHeapArray.ofDoubles(numberOfArcs);
+            OffHeapArray aliases = OffHeapArray.ofInts(numberOfArcs);
+            int[] offset = new int[1];
+            double[][] rowWeights = { new double[0] };
+            double[][] rowProbabilities = { new double[0] };
+            int[][] rowAliases = { new int[0] };
+            
+            scanner.scan((wordId, rowIds, rowArcWeights, length) -> {
+                if (rowWeights[0].length < length) {
+                    rowWeights[0] = new double[length];
+                    rowProbabilities[0] = new double[length];
+                    rowAliases[0] = new int[length];
+                }
+                
+                for (int i = 0; i < length; i++) {
+                    rowWeights[0][i] = rowArcWeights[i];
+                }
+                
+                AliasProbabilityDistribution.buildAliasTable(
+                        rowWeights[0],
+                        0,
+                        length,
+                        rowProbabilities[0],
+                        rowAliases[0]);
+                
+                for (int i = 0; i < length; i++) {
+                    ids.setInt(offset[0] + i, rowIds[i]);
+                    weights.setInt(offset[0] + i, rowArcWeights[i]);
+                    probabilities.setDouble(offset[0] + i,
+                                            rowProbabilities[0][i]);
+                    aliases.setInt(offset[0] + i, rowAliases[0][i]);
+                }
+                
+                offset[0] += length;
+                offsets.setInt(wordId + 1, offset[0]);
+            });
+            
+            return new Rows(offsets,
+                            ids,
+                            weights,
+                            probabilities,
+                            aliases,
+                            numberOfDistinctWords);
+        }
+        
+        int getLength(int wordId) {
+            return offsets.getInt(wordId + 1) - offsets.getInt(wordId);
+        }
+        
+        int getId(int wordId, int index) {
+            return ids.getInt(offsets.getInt(wordId) + index);
+        }
+        
+        int getWeight(int wordId, int index) {
+            return weights.getInt(offsets.getInt(wordId) + index);
+        }
+        
+        double getProbability(int wordId, int index) {
+            return probabilities.getDouble(offsets.getInt(wordId) + index);
+        }
+        
+        int getAlias(int wordId, int index) {
+            return aliases.getInt(offsets.getInt(wordId) + index);
+        }
+        
+        long getTotalWeight(int wordId) {
+            return totalWeights.getLong(wordId);
+        }
+        
+        long getSizeInBytes() {
+            return offsets.getSizeInBytes()
+                    + ids.getSizeInBytes()
+                    + weights.getSizeInBytes()
+                    + probabilities.getSizeInBytes()
+                    + aliases.getSizeInBytes()
+                    + totalWeights.getSizeInBytes();
+        }
+        
+        // The same alias method as in AliasProbabilityDistribution, reading
+        // the table from off-heap memory.
+        int sample(int wordId, RandomGenerator random) {
+            int fromIndex = offsets.getInt(wordId);
+            int length = offsets.getInt(wordId + 1) - fromIndex;
+            
+            if (length == 0) {
+                return -1;
+            }
+            
+            double u = random.nextDouble() * length;
+            int index = Math.min((int) u, length - 1);
+            
+            if (u - index >= probabilities.getDouble(fromIndex + index)) {
+                index = aliases.getInt(fromIndex + index);
+            }
+            
+            return ids.getInt(fromIndex + index);
+        }
+    }
+    
+    private final int numberOfDistinctWords;
+    private final OffHeapArray wordByteOffsets;
+    private final OffHeapArray stringTable;
+    private final OffHeapArray numbersOfStarts;
+    private final Rows children;
+    private final Rows parents;
+    private final int numberOfSentences;
+    private final int numberOfWords;
+    
+    OffHeapWordGraph(int numberOfDistinctWords,
+                     OffHeapArray wordByteOffsets,
+                     OffHeapArray stringTable,
+                     OffHeapArray numbersOfStarts,
+                     Rows children,
+                     Rows parents,
+                     int numberOfSentences,
+                     int numberOfWords) {
+        this.numberOfDistinctWords = numberOfDistinctWords;
+        this.wordByteOffsets = wordByteOffsets;
+        this.stringTable = stringTable;
+        this.numbersOfStarts = numbersOfStarts;
+        this.children = children;
+        this.parents = parents;
+        this.numberOfSentences = numberOfSentences;
+        this.numberOfWords = numberOfWords;
+    }
+    
+    /**
+     * Copies {@code graph} out of the heap.
+     */
+    public static OffHeapWordGraph copyOf(WordGraph graph) {
+        try {
+            return copyOf(graph::getWord,
+                          graph::getNumberOfStarts,
+                          graph.getNumberOfDistinctWords(),
+                          WordGraphSnapshot.getArcScanner(graph, true),
+                          getNumberOfArcs(graph, true),
+                          WordGraphSnapshot.getArcScanner(graph, false),
+                          getNumberOfArcs(graph, false),
+                          graph.getNumberOfSentences(),
+                          graph.getNumberOfWords());
+        } catch (IOException ex) {
+            // Scanning an in-memory graph does no I/O, so the graph is too
+            // large.
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    /**
+     * Builds an off-heap graph from the words and their numbers of sentence
+     * starts in the ID order and the arcs visited by the two scanners.
+     */
+    static OffHeapWordGraph copyOf(IntFunction<String> words,
+                                   IntUnaryOperator numbersOfStarts,
+                                   int numberOfDistinctWords,
+                                   WordGraphSnapshot.ArcScanner childScanner,
+                                   long numberOfChildArcs,
+                                   WordGraphSnapshot.ArcScanner parentScanner,
+                                   long numberOfParentArcs,
+                                   int numberOfSentences,
+                                   int numberOfWords) throws IOException {
+        if (numberOfChildArcs > Integer.MAX_VALUE
+                || numberOfParentArcs > Integer.MAX_VALUE) {
+            throw new IOException(
+                    "Too many arcs for an off-heap word graph: "
+                            + Math.max(numberOfChildArcs, numberOfParentArcs)
+                            + ".");
+        }
+        
+        byte[][] encodedWords = new byte[numberOfDistinctWords][];
+        OffHeapArray wordByteOffsets =
+                OffHeapArray.ofInts(numberOfDistinctWords + 1L);
+        
+        OffHeapArray startCounts = OffHeapArray.ofInts(numberOfDistinctWords);
+        long byteOffset = 0L;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            encodedWords[wordId] =
+                    words.apply(wordId).getBytes(StandardCharsets.UTF_8);
+            
+            startCounts.setInt(wordId, numbersOfStarts.applyAsInt(wordId));
+            
+            byteOffset += encodedWords[wordId].length;
+            
+            if (byteOffset > Integer.MAX_VALUE) {
+                throw new IOException(
+                        "The words of an off-heap word graph may take at "
+                                + "most "
+                                + Integer.MAX_VALUE
+                                + " bytes.");
+            }
+            
+            wordByteOffsets.setInt(wordId + 1, (int) byteOffset);
+        }
+        
+        OffHeapArray stringTable = new OffHeapArray(byteOffset);
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            stringTable.setBytes(wordByteOffsets.getInt(wordId),
+                                 encodedWords[wordId],
+                                 encodedWords[wordId].length);
+        }
+        
+        return new OffHeapWordGraph(numberOfDistinctWords,
+                                    wordByteOffsets,
+                                    stringTable,
+                                    startCounts,
+                                    Rows.copyOf(childScanner,
+                                                numberOfDistinctWords,
+                                                numberOfChildArcs),
+                                    Rows.copyOf(parentScanner,
+                                                numberOfDistinctWords,
+                                                numberOfParentArcs),
+                                    numberOfSentences,
+                                    numberOfWords);
+    }
+    
+    /**
+     * Returns the number of bytes held outside the heap.
+     */
+    public long getSizeInBytes() {
+        return wordByteOffsets.getSizeInBytes()
+                + stringTable.getSizeInBytes()
+                + numbersOfStarts.getSizeInBytes()
+                + children.getSizeInBytes()
+                + parents.getSizeInBytes();
+    }
+    
+    private static long getNumberOfArcs(WordGraph graph, boolean children) {
+        int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+        long numberOfArcs = 0L;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            numberOfArcs += children ?
+                            graph.getNumberOfChildren(wordId) :
+                            graph.getNumberOfParents(wordId);
+        }
+        
+        return numberOfArcs;
+    }
+    
+    @Override
+    public int getNumberOfSentences() {
+        return numberOfSentences;
+    }
+    
+    @Override
+    public int getNumberOfWords() {
+        return numberOfWords;
+    }
+    
+    @Override
+    public int getNumberOfDistinctWords() {
+        return numberOfDistinctWords;
+    }
+    
+    @Override
+    public String getWord(int wordId) {
+        int fromOffset = wordByteOffsets.getInt(wordId);
+        byte[] bytes =
+                new byte[wordByteOffsets.getInt(wordId + 1) - fromOffset];
+        
+        stringTable.getBytes(fromOffset, bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public int getWordId(String word) {
+        int low = 0;
+        int high = numberOfDistinctWords - 1;
+        
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = getWord(middle).compareTo(word);
+            
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        
+        return -1;
+    }
+    
+    @Override
+    public int getNumberOfChildren(int wordId) {
+        return children.getLength(wordId);
+    }
+    
+    @Override
+    public int getChild(int wordId, int index) {
+        return children.getId(wordId, index);
+    }
+    
+    @Override
+    public int getChildWeight(int wordId, int index) {
+        return children.getWeight(wordId, index);
+    }
+    
+    @Override
+    public long getTotalChildWeight(int wordId) {
+        return children.getTotalWeight(wordId);
+    }
+    
+    @Override
+    public int getNumberOfParents(int wordId) {
+        return parents.getLength(wordId);
+    }
+    
+    @Override
+    public int getParent(int wordId, int index) {
+        return parents.getId(wordId, index);
+    }
+    
+    @Override
+    public int getParentWeight(int wordId, int index) {
+        return parents.getWeight(wordId, index);
+    }
+    
+    @Override
+    public long getTotalParentWeight(int wordId) {
+        return parents.getTotalWeight(wordId);
+    }
+    
+    @Override
+    public int getNumberOfStarts(int wordId) {
+        return numbersOfStarts.getInt(wordId);
+    }
+    
+    @Override
+    public double getChildProbability(int wordId, int index) {
+        return children.getProbability(wordId, index);
+    }
+    
+    @Override
+    public int getChildAlias(int wordId, int index) {
+        return children.getAlias(wordId, index);
+    }
+    
+    @Override
+    public double getParentProbability(int wordId, int index) {
+        return parents.getProbability(wordId, index);
+    }
+    
+    @Override
+    public int getParentAlias(int wordId, int index) {
+        return parents.getAlias(wordId, index);
+    }
+    
+    @Override
+    public int sampleParent(int wordId, RandomGenerator random) {
+        return parents.sample(wordId, random);
+    }
+    
+    @Override
+    public int sampleChild(int wordId, RandomGenerator random) {
+        return children.sample(wordId, random);
+    }
+}
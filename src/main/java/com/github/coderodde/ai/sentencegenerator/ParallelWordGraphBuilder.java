@@ -0,0 +1,237 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the bigrams of a text on a fork-join pool. The text is cut into
+ * chunks right after sentence terminators, so that every chunk splits into
+ * exactly the same sentences as the entire text does. Each chunk is counted
+ * into its own {@link WordGraphBuilder}, and the builders are merged
+ * pairwise on the way up.
+ * <p>
+ * A corpus of several shards is instead counted by a fixed pool of readers,
+ * each of which takes the next unread shard, largest first, and streams it
+ * into a builder of its own, so that reading, decompressing and counting
+ * all run in parallel.
+ */
+final class ParallelWordGraphBuilder {
+
+    private static final int MINIMUM_CHUNK_LENGTH = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    public static WordGraphBuilder countWords(String text, int parallelism) {
+        int[] chunkBounds = getChunkBounds(text, parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            return pool.invoke(
+                    new CountTask(text, chunkBounds, 0, chunkBounds.length - 1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static WordGraphBuilder countWords(List<Path> files,
+                                              int parallelism)
+            throws IOException {
+        List<Path> shards = sortBySizeDescending(files);
+        int numberOfReaders = Math.min(parallelism, shards.size());
+        AtomicInteger nextShard = new AtomicInteger();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(numberOfReaders);
+
+        List<Future<WordGraphBuilder>> futures =
+                new ArrayList<>(numberOfReaders);
+
+        try {
+            for (int i = 0; i < numberOfReaders; i++) {
+                futures.add(executor.submit(() -> {
+                    WordGraphBuilder builder = new WordGraphBuilder();
+                    int shard;
+
+                    while ((shard = nextShard.getAndIncrement())
+                            < shards.size()) {
+                        new SentenceProducer(shards.get(shard))
+                                .forEachSentence(sentence -> {
+                                    List<String> words =
+                                            WordProvider.getWords(sentence);
+
+                                    if (!words.isEmpty()) {
+                                        builder.addSentence(words);
+                                    }
+                                });
+                    }
+
+                    return builder;
+                }));
+            }
+
+            WordGraphBuilder result = null;
+
+            for (Future<WordGraphBuilder> future : futures) {
+                WordGraphBuilder builder = getResult(future);
+
+                if (result == null) {
+                    result = builder;
+                } else if (result.getNumberOfDistinctWords()
+                        < builder.getNumberOfDistinctWords()) {
+                    builder.merge(result);
+                    result = builder;
+                } else {
+                    result.merge(builder);
+                }
+            }
+
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static WordGraphBuilder getResult(Future<WordGraphBuilder> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            if (ex.getCause() instanceof UncheckedIOException
+                    uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static List<Path> sortBySizeDescending(List<Path> files)
+            throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+
+        for (Path file : files) {
+            sizes.put(file, Files.size(file));
+        }
+
+        List<Path> shards = new ArrayList<>(files);
+        shards.sort(Comparator.comparingLong((Path file) -> sizes.get(file))
+                              .reversed());
+        return shards;
+    }
+
+    private static final class CountTask
+            extends RecursiveTask<WordGraphBuilder> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final int[] chunkBounds;
+        private final int fromChunk;
+        private final int toChunk;
+
+        CountTask(String text, int[] chunkBounds, int fromChunk, int toChunk) {
+            this.text = text;
+            this.chunkBounds = chunkBounds;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected WordGraphBuilder compute() {
+            if (toChunk - fromChunk == 1) {
+                List<String> sentences =
+                        SentenceProducer.splitTextToSentences(
+                                text,
+                                chunkBounds[fromChunk],
+                                chunkBounds[toChunk]);
+
+                WordGraphBuilder builder = new WordGraphBuilder();
+                builder.addSentences(WordProvider.getWords(sentences));
+                return builder;
+            }
+
+            int middleChunk = (fromChunk + toChunk) >>> 1;
+            CountTask leftTask =
+                    new CountTask(text, chunkBounds, fromChunk, middleChunk);
+
+            CountTask rightTask =
+                    new CountTask(text, chunkBounds, middleChunk, toChunk);
+
+            leftTask.fork();
+            WordGraphBuilder rightBuilder = rightTask.compute();
+            WordGraphBuilder leftBuilder = leftTask.join();
+
+            // Merging is linear in the size of the merged builder.
+            if (leftBuilder.getNumberOfDistinctWords()
+                    < rightBuilder.getNumberOfDistinctWords()) {
+                rightBuilder.merge(leftBuilder);
+                return rightBuilder;
+            }
+
+            leftBuilder.merge(rightBuilder);
+            return leftBuilder;
+        }
+    }
+
+    private static int[] getChunkBounds(String text, int parallelism) {
+        int numberOfChunks =
+                Math.max(1,
+                         Math.min(parallelism * CHUNKS_PER_THREAD,
+                                  text.length() / MINIMUM_CHUNK_LENGTH));
+
+        int[] chunkBounds = new int[numberOfChunks + 1];
+        int numberOfBounds = 1;
+
+        for (int i = 1; i < numberOfChunks; i++) {
+            int index = (int) ((long) text.length() * i / numberOfChunks);
+            index = Math.max(index, chunkBounds[numberOfBounds - 1]);
+
+            while (index < text.length()
+                    && !SentenceProducer.isSentenceTerminator(
+                            text.charAt(index))) {
+                index++;
+            }
+
+            if (index == text.length()) {
+                break;
+            }
+
+            // Start the next chunk right after the terminator.
+            if (index + 1 > chunkBounds[numberOfBounds - 1]) {
+                chunkBounds[numberOfBounds++] = index + 1;
+            }
+        }
+
+        if (numberOfBounds == 1 
+                || chunkBounds[numberOfBounds - 1] < text.length()) {
+            chunkBounds[numberOfBounds++] = text.length();
+        }
+
+        if (numberOfBounds == chunkBounds.length) {
+            return chunkBounds;
+        }
+
+        int[] result = new int[numberOfBounds];
+        System.arraycopy(chunkBounds, 0, result, 0, numberOfBounds);
+        return result;
+    }
+}
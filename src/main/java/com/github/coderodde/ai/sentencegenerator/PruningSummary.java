@@ -0,0 +1,73 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+/**
+ * Describes what {@link WordGraphBuilder#prune(int, int, int)} removed: the
+ * words mapped to {@link #UNKNOWN_WORD} with their occurrences, and the arcs
+ * dropped for being too rare, in total and per remaining word.
+ */
+final class PruningSummary {
+    
+    public static final String UNKNOWN_WORD = "<unk>";
+    
+    private final int numberOfPrunedWords;
+    private final long numberOfPrunedOccurrences;
+    private final int numberOfPrunedArcs;
+    private final long numberOfPrunedArcOccurrences;
+    private final SymbolTable symbolTable;
+    private final int[] numberOfPrunedChildArcs;
+    private final int[] numberOfPrunedParentArcs;
+    
+    PruningSummary(int numberOfPrunedWords,
+                   long numberOfPrunedOccurrences,
+                   int numberOfPrunedArcs,
+                   long numberOfPrunedArcOccurrences,
+                   SymbolTable symbolTable,
+                   int[] numberOfPrunedChildArcs,
+                   int[] numberOfPrunedParentArcs) {
+        this.numberOfPrunedWords = numberOfPrunedWords;
+        this.numberOfPrunedOccurrences = numberOfPrunedOccurrences;
+        this.numberOfPrunedArcs = numberOfPrunedArcs;
+        this.numberOfPrunedArcOccurrences = numberOfPrunedArcOccurrences;
+        this.symbolTable = symbolTable;
+        this.numberOfPrunedChildArcs = numberOfPrunedChildArcs;
+        this.numberOfPrunedParentArcs = numberOfPrunedParentArcs;
+    }
+    
+    public int getNumberOfPrunedWords() {
+        return numberOfPrunedWords;
+    }
+    
+    public long getNumberOfPrunedOccurrences() {
+        return numberOfPrunedOccurrences;
+    }
+    
+    public int getNumberOfPrunedArcs() {
+        return numberOfPrunedArcs;
+    }
+    
+    public long getNumberOfPrunedArcOccurrences() {
+        return numberOfPrunedArcOccurrences;
+    }
+    
+    /**
+     * Returns the number of outgoing arcs of {@code word} that were pruned,
+     * or {@code 0} if there is no such word.
+     */
+    public int getNumberOfPrunedChildArcs(String word) {
+        int id = symbolTable.getId(word);
+        return id == -1 || id >= numberOfPrunedChildArcs.length ? 
+                0 : 
+                numberOfPrunedChildArcs[id];
+    }
+    
+    /**
+     * Returns the number of incoming arcs of {@code word} that were pruned,
+     * or {@code 0} if there is no such word.
+     */
+    public int getNumberOfPrunedParentArcs(String word) {
+        int id = symbolTable.getId(word);
+        return id == -1 || id >= numberOfPrunedParentArcs.length ? 
+                0 : 
+                numberOfPrunedParentArcs[id];
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event spanning one sampling step of a sentence, that is, drawing a
+ * parent word from the probability distribution of the current word. The
+ * event fires once per generated word, so it is disabled unless a recording
+ * enables it explicitly.
+ */
+@Name("com.github.coderodde.ai.sentencegenerator.SampleElement")
+@Label("Sample Element")
+@Category("Sentence Generator")
+@Description("Samples the previous word of a sentence.")
+@Enabled(false)
+@StackTrace(false)
+final class SampleElementEvent extends Event {
+    
+    @Label("Word ID")
+    int wordId;
+    
+    @Label("Sampled Word ID")
+    int sampledWordId;
+}
@@ -1,12 +1,26 @@
 package com.github.coderodde.ai.sentencegenerator;
 
-import com.github.coderodde.ai.sentencegenerator.WordGraphBuilder.Data;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
 
 final class SentenceGenerator {
 
@@ -17,133 +31,1213 @@ final class SentenceGenerator {
         private static final String LIST_ALL_WORDS          = "list";
         private static final String LIST_WORD_RANGE         = "range";
         private static final String WORD_STAT               = "stat";
+        private static final String NEXT_WORDS              = "next";
+        private static final String PREVIOUS_WORDS          = "prev";
+        private static final String SCORE_FILE              = "score-file";
+        private static final String SCORE                   = "score";
+        private static final String BEST                    = "best";
+        private static final String INGEST                  = "ingest";
+        private static final String METRICS                 = "metrics";
         private static final String QUIT                    = "quit";
     }
     
+    private static final String BATCH_COUNT_FLAG = "-n";
+    private static final String BATCH_SEED_FLAG  = "-s";
+    private static final String SEED_WORD_FLAG    = "--seed-word";
+    private static final String MUST_CONTAIN_FLAG = "--must-contain";
+    private static final String LENGTH_FLAG       = "--length";
+    private static final String FIRST_WORD_FLAG   = "--first";
+    private static final String FULL_STOP_FLAG    = "--full-stop";
+    private static final int DEFAULT_BEAM_WIDTH = 16;
+    private static final int DEFAULT_NUMBER_OF_NEIGHBOURS = 10;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    private static final String STANDARD_INPUT = "-";
+    
     public static void main(String[] args) {
-        if (args.length != 1) {
+        CommandLineArguments commandLineArguments = null;
+        
+        try {
+            commandLineArguments = CommandLineArguments.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+            System.out.println(
+                    "Usage: java -jar SentenceGenerator.jar "
+                            + "[--compact] [--parallel] [--threads N] [--stream] "
+                            + "[--order K] [--min-count N] [--min-edge N] "
+                            + "[--max-vocab N] [--sketch MIB] "
+                            + "[--sketch-threshold T] [--external MIB] "
+                            + "[--temp DIR] [--off-heap] [--kneser-ney] "
+                            + "[--save SNAPSHOT] "
+                            + "[--serve PORT | --batch SCRIPT] "
+                            + "(FILE... | --load SNAPSHOT)");
             System.exit(1);
         }
         
-        List<String> sentences = null;
-        long totalPreprocessingDuration = 0L;
+        WordGraph graph = null;
+        PruningSummary pruningSummary = null;
+        NGramModel.Builder ngramModelBuilder = 
+                commandLineArguments.getOrder() > 2 ?
+                new NGramModel.Builder(commandLineArguments.getOrder()) :
+                null;
+        
+        if (commandLineArguments.getLoadFileName() != null) {
+            try {
+                BuildGraphEvent event = new BuildGraphEvent();
+                event.begin();
+                long startTime = System.nanoTime();
+                Path snapshot = Path.of(commandLineArguments.getLoadFileName());
+                graph = commandLineArguments.isOffHeap() ?
+                        WordGraphSnapshot.loadOffHeap(snapshot) :
+                        WordGraphSnapshot.load(snapshot);
+                long duration = System.nanoTime() - startTime;
+                commitBuildGraphEvent(event, BuildGraphEvent.SNAPSHOT, graph);
+                Metrics.recordStage("loading snapshot", duration);
+                System.out.println(
+                        "Loading snapshot took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+        } else {
+            long startTime = System.nanoTime();
+            Corpus corpus = resolveCorpus(commandLineArguments);
+            
+            if (commandLineArguments.isExternal()) {
+                graph = buildExternalGraph(commandLineArguments, corpus);
+            } else {
+                WordGraphBuilder builder = 
+                        countWords(commandLineArguments, 
+                                   corpus, 
+                                   ngramModelBuilder);
+                
+                if (commandLineArguments.isPruning()) {
+                    pruningSummary = prune(commandLineArguments, builder);
+                }
+                
+                graph = buildGraph(commandLineArguments, builder);
+            }
+            
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("total preprocessing", duration);
+            
+            System.out.println(
+                    "Total preprocessing took "
+                            + Metrics.toMillis(duration)
+                            + " ms.");
+        }
+        
+        // An external build has already streamed its snapshot.
+        if (commandLineArguments.getSaveFileName() != null
+                && !commandLineArguments.isExternal()) {
+            try {
+                long startTime = System.nanoTime();
+                WordGraphSnapshot.save(
+                        graph, 
+                        Path.of(commandLineArguments.getSaveFileName()));
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("saving snapshot", duration);
+                System.out.println(
+                        "Saving snapshot took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+        }
+        
+        if (commandLineArguments.isOffHeap() 
+                && !(graph instanceof OffHeapWordGraph)) {
+            long startTime = System.nanoTime();
+            graph = OffHeapWordGraph.copyOf(graph);
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("moving graph off heap", duration);
+            System.out.println(
+                    "Moving word graph off heap took " 
+                            + Metrics.toMillis(duration) 
+                            + " ms.");
+        }
         
+        if (graph instanceof OffHeapWordGraph offHeapWordGraph) {
+            System.out.println(
+                    "The word graph occupies " 
+                            + (offHeapWordGraph.getSizeInBytes() >> 20) 
+                            + " MiB off heap.");
+        }
+        
+        Metrics.recordGraph(graph);
+        LiveSentenceModel model;
+        
+        if (ngramModelBuilder != null) {
+            long startTime = System.nanoTime();
+            NGramModel ngramModel = ngramModelBuilder.build();
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("building n-gram model", duration);
+            System.out.println(
+                    "Building order-"
+                            + ngramModel.getOrder()
+                            + " model with "
+                            + ngramModel.getNumberOfContexts()
+                            + " contexts took "
+                            + Metrics.toMillis(duration)
+                            + " ms.");
+            
+            model = new LiveSentenceModel(graph, 
+                                          ngramModelBuilder, 
+                                          ngramModel,
+                                          commandLineArguments.isKneserNey());
+        } else {
+            model = new LiveSentenceModel(graph, 
+                                          pruningSummary,
+                                          commandLineArguments.isKneserNey());
+        }
+        
+        if (commandLineArguments.isServe()) {
+            SentenceServer server = 
+                    new SentenceServer(model, 
+                                       commandLineArguments.getThreads());
+            
+            System.out.println(
+                    "Serving on port " 
+                            + commandLineArguments.getServePort() 
+                            + ".");
+            
+            try {
+                server.serve(commandLineArguments.getServePort());
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+        } else if (commandLineArguments.isBatch()) {
+            System.exit(batch(model, 
+                              commandLineArguments.getThreads(), 
+                              commandLineArguments.getBatchFileName()));
+        } else {
+            repl(model, commandLineArguments.getThreads());
+        }
+    }
+    
+    private static Corpus 
+        resolveCorpus(CommandLineArguments commandLineArguments) {
         try {
-            long startTime = System.currentTimeMillis();
-            sentences = new SentenceProducer(args[0]).getSentences();
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            totalPreprocessingDuration += duration;
-            System.out.println("Producing sentences took " + duration + " ms.");
+            Corpus corpus = 
+                    Corpus.resolve(commandLineArguments.getFileNames());
+            
+            if (corpus.getNumberOfFiles() > 1) {
+                System.out.println(
+                        "Reading "
+                                + corpus.getNumberOfFiles()
+                                + " corpus files of "
+                                + (corpus.getSizeInBytes() >> 20)
+                                + " MiB.");
+            }
+            
+            return corpus;
         } catch (IOException ex) {
             System.out.println(ex);
             System.exit(2);
+            return null;
         }
+    }
+    
+    /**
+     * Builds the graph with sorted spill files so that the bigrams never 
+     * have to fit in memory. With {@code --save}, the snapshot is streamed 
+     * from the spill files and the graph is loaded from it.
+     */
+    private static WordGraph 
+        buildExternalGraph(CommandLineArguments commandLineArguments,
+                           Corpus corpus) {
+        Path temporaryDirectory = 
+                Path.of(commandLineArguments.getTemporaryDirectoryName() 
+                        == null ? 
+                        System.getProperty("java.io.tmpdir") : 
+                        commandLineArguments.getTemporaryDirectoryName());
         
-        long startTime = System.currentTimeMillis();
-        List<List<String>> words = WordProvider.getWords(sentences);
-        long endTime = System.currentTimeMillis();
-        long duration = endTime - startTime;
-        totalPreprocessingDuration += duration;
+        try (ExternalWordGraphBuilder builder = 
+                new ExternalWordGraphBuilder(
+                        corpus,
+                        temporaryDirectory,
+                        (long) commandLineArguments.getExternalMegabytes() 
+                                << 20)) {
+            
+            // The event spans the whole build, from the corpus to the graph.
+            BuildGraphEvent event = new BuildGraphEvent();
+            event.begin();
+            long startTime = System.nanoTime();
+            builder.countBigrams();
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("sorting bigrams", duration);
+            System.out.println(
+                    "Sorting "
+                            + builder.getNumberOfArcs()
+                            + " arcs in "
+                            + builder.getNumberOfRuns()
+                            + " runs ("
+                            + (builder.getNumberOfSpilledBytes() >> 20)
+                            + " MiB spilled) took "
+                            + Metrics.toMillis(duration)
+                            + " ms.");
+            
+            if (commandLineArguments.getSaveFileName() == null) {
+                startTime = System.nanoTime();
+                WordGraph graph = commandLineArguments.isOffHeap() ?
+                                  builder.buildOffHeap() :
+                                  builder.buildCompact();
+                duration = System.nanoTime() - startTime;
+                commitBuildGraphEvent(event, BuildGraphEvent.EXTERNAL, graph);
+                Metrics.recordStage("building word graph", duration);
+                System.out.println(
+                        "Building word graph took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+                
+                return graph;
+            }
+            
+            Path snapshot = Path.of(commandLineArguments.getSaveFileName());
+            startTime = System.nanoTime();
+            builder.saveSnapshot(snapshot);
+            duration = System.nanoTime() - startTime;
+            Metrics.recordStage("saving snapshot", duration);
+            System.out.println(
+                    "Saving snapshot took " 
+                            + Metrics.toMillis(duration) 
+                            + " ms.");
+            
+            startTime = System.nanoTime();
+            WordGraph graph = commandLineArguments.isOffHeap() ?
+                              WordGraphSnapshot.loadOffHeap(snapshot) :
+                              WordGraphSnapshot.load(snapshot);
+            duration = System.nanoTime() - startTime;
+            commitBuildGraphEvent(event, BuildGraphEvent.EXTERNAL, graph);
+            Metrics.recordStage("loading snapshot", duration);
+            System.out.println(
+                    "Loading snapshot took " 
+                            + Metrics.toMillis(duration) 
+                            + " ms.");
+            
+            return graph;
+        } catch (IOException ex) {
+            System.out.println(ex);
+            System.exit(2);
+            return null;
+        }
+    }
+    
+    private static WordGraphBuilder 
+        countWords(CommandLineArguments commandLineArguments,
+                   Corpus corpus,
+                   NGramModel.Builder ngramModelBuilder) {
+        WordGraphBuilder builder = null;
+        
+        if (commandLineArguments.isSketch()) {
+            SketchWordGraphBuilder sketchBuilder = 
+                    new SketchWordGraphBuilder(
+                            (long) commandLineArguments.getSketchMegabytes() 
+                                    << 20, 
+                            commandLineArguments.getSketchThreshold());
+            
+            try {
+                long startTime = System.nanoTime();
+                corpus.forEachSentence(sentence -> {
+                    List<String> words = WordProvider.getWords(sentence);
+                    
+                    if (!words.isEmpty()) {
+                        sketchBuilder.addSentence(words);
+                    }
+                });
+                
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("sketching bigrams", duration);
+                System.out.println(
+                        "Streaming sentences and sketching bigrams took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+            
+            printSketchReport(sketchBuilder, 
+                              commandLineArguments.getSketchThreshold());
+            
+            builder = sketchBuilder.toWordGraphBuilder();
+        } else if (commandLineArguments.isStream()) {
+            WordGraphBuilder streamBuilder = new WordGraphBuilder();
+            
+            try {
+                long startTime = System.nanoTime();
+                corpus.forEachSentence(sentence -> {
+                    List<String> words = WordProvider.getWords(sentence);
+                    
+                    if (!words.isEmpty()) {
+                        streamBuilder.addSentence(words);
+                        
+                        if (ngramModelBuilder != null) {
+                            ngramModelBuilder.addSentence(words);
+                        }
+                    }
+                });
+                
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("streaming sentences", duration);
+                System.out.println(
+                        "Streaming sentences and counting words took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+            
+            builder = streamBuilder;
+        } else if (commandLineArguments.isParallel() 
+                && corpus.getNumberOfFiles() > 1) {
+            try {
+                long startTime = System.nanoTime();
+                builder = ParallelWordGraphBuilder.countWords(
+                        corpus.getFiles(), 
+                        commandLineArguments.getThreads());
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("counting words", duration);
+                System.out.println(
+                        "Reading and counting "
+                                + corpus.getNumberOfFiles()
+                                + " files on "
+                                + commandLineArguments.getThreads()
+                                + " threads took "
+                                + Metrics.toMillis(duration)
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+        } else if (commandLineArguments.isParallel()) {
+            String text = null;
+            
+            try {
+                long startTime = System.nanoTime();
+                text = new SentenceProducer(corpus.getFiles().get(0)).getText();
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("reading text", duration);
+                System.out.println(
+                        "Reading text took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+            
+            long startTime = System.nanoTime();
+            builder = ParallelWordGraphBuilder.countWords(
+                    text, 
+                    commandLineArguments.getThreads());
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("counting words", duration);
+            
+            System.out.println(
+                    "Counting words on " 
+                            + commandLineArguments.getThreads() 
+                            + " threads took " 
+                            + Metrics.toMillis(duration) 
+                            + " ms.");
+        } else {
+            List<String> sentences = null;
+            
+            try {
+                long startTime = System.nanoTime();
+                sentences = corpus.getSentences();
+                long duration = System.nanoTime() - startTime;
+                Metrics.recordStage("producing sentences", duration);
+                System.out.println(
+                        "Producing sentences took " 
+                                + Metrics.toMillis(duration) 
+                                + " ms.");
+            } catch (IOException ex) {
+                System.out.println(ex);
+                System.exit(2);
+            }
+            
+            long startTime = System.nanoTime();
+            List<List<String>> words = WordProvider.getWords(sentences);
+            long duration = System.nanoTime() - startTime;
+            Metrics.recordStage("producing word data", duration);
+            
+            System.out.println(
+                    "Producing word data took " 
+                            + Metrics.toMillis(duration) 
+                            + " ms.");
+            
+            builder = new WordGraphBuilder();
+            builder.addSentences(words);
+            
+            if (ngramModelBuilder != null) {
+                ngramModelBuilder.addSentences(words);
+            }
+        }
+        
+        return builder;
+    }
+    
+    private static void 
+        printSketchReport(SketchWordGraphBuilder sketchBuilder, 
+                          int threshold) {
+        CountMinSketch sketch = sketchBuilder.getSketch();
+        
+        System.out.println(
+                String.format(
+                        Locale.ROOT,
+                        "Sketch of %d x %d counters and %d bigrams kept "
+                                + "with a count of at least %d in %.1f MiB.",
+                        sketch.getDepth(),
+                        sketch.getWidth(),
+                        sketchBuilder.getNumberOfCandidates(),
+                        threshold,
+                        sketchBuilder.getSizeInBytes() / (double) (1 << 20)));
+        
+        System.out.println(
+                String.format(
+                        Locale.ROOT,
+                        "Each kept count overestimates by at most "
+                                + "%d (epsilon = %.3g of %d sketched "
+                                + "bigrams) with probability %.4f.",
+                        sketchBuilder.getErrorBound(),
+                        sketch.getEpsilon(),
+                        sketch.getTotalCount(),
+                        1.0 - sketch.getDelta()));
+        
+        if (sketchBuilder.getNumberOfRejectedPromotions() > 0) {
+            System.out.println(
+                    "The bigram table was full; "
+                            + sketchBuilder.getNumberOfRejectedPromotions()
+                            + " bigram occurrences over the threshold were "
+                            + "not kept.");
+        }
+    }
+    
+    private static PruningSummary 
+        prune(CommandLineArguments commandLineArguments,
+              WordGraphBuilder builder) {
+        long startTime = System.nanoTime();
+        PruningSummary pruningSummary = 
+                builder.prune(commandLineArguments.getMinimumWordCount(), 
+                              commandLineArguments.getMinimumEdgeCount(), 
+                              commandLineArguments.getMaximumVocabularySize());
+        long duration = System.nanoTime() - startTime;
+        Metrics.recordStage("pruning", duration);
         
-        System.out.println("Producing word data took " + duration + " ms.");
+        System.out.println(
+                "Pruning "
+                        + pruningSummary.getNumberOfPrunedWords()
+                        + " words and "
+                        + pruningSummary.getNumberOfPrunedArcs()
+                        + " arcs took "
+                        + Metrics.toMillis(duration)
+                        + " ms.");
         
-        startTime = System.currentTimeMillis();
-        Data data = WordGraphBuilder.buildGraph(words);
-        Collections.<DirectedWordGraphNode>sort(data.graph);
-        endTime = System.currentTimeMillis();
-        duration = endTime - startTime;
-        totalPreprocessingDuration += duration;
+        return pruningSummary;
+    }
+    
+    private static WordGraph 
+        buildGraph(CommandLineArguments commandLineArguments,
+                   WordGraphBuilder builder) {
+        BuildGraphEvent event = new BuildGraphEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        WordGraph graph = commandLineArguments.isCompact() ?
+                builder.buildCompact() :
+                builder.build();
+        long duration = System.nanoTime() - startTime;
+        commitBuildGraphEvent(event, BuildGraphEvent.COUNTS, graph);
+        Metrics.recordStage("building word graph", duration);
         
-        System.out.println("Building word graph took " + duration + " ms.");
         System.out.println(
-                "Total preprocessing took " 
-                        + totalPreprocessingDuration 
+                "Building word graph took " 
+                        + Metrics.toMillis(duration) 
                         + " ms.");
-        repl(data);
+        return graph;
     }
     
-    private static void repl(Data data) {
+    private static void commitBuildGraphEvent(BuildGraphEvent event,
+                                              String source,
+                                              WordGraph graph) {
+        event.end();
+        
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.compact = !(graph instanceof WordGraphBuilder.Data);
+            event.numberOfSentences = graph.getNumberOfSentences();
+            event.numberOfWords = graph.getNumberOfWords();
+            event.numberOfDistinctWords = graph.getNumberOfDistinctWords();
+            event.commit();
+        }
+    }
+    
+    private static void repl(LiveSentenceModel model, int threads) {
         Scanner scanner = new Scanner(System.in);
         
         while (true) {
             System.out.print("> ");
             String cmdString = scanner.nextLine();
             
-            if (cmdString.startsWith(CommandNames.GENERATE_SENTENCE)) {
-                processCommandGenerateSentence(cmdString, data);
-            } else if (cmdString.startsWith(
-                    CommandNames.GET_NUMBER_OF_SENTENCES)) {
-                
-                processCommandGetNumberOfSentences(
-                        data.numberOfSentences);
-                
-            } else if (cmdString.startsWith(
-                    CommandNames.GET_NUMBER_OF_WORDS)) {
-                processCommandGetNumberOfWords(cmdString, data);
-            } else if (cmdString.startsWith(
-                    CommandNames.LIST_ALL_WORDS)) {
-                processCommandListAllWords(data.graph);
-            } else if (cmdString.startsWith(
-                    CommandNames.LIST_WORD_RANGE)) {
-                processCommandListWordRange(cmdString, data.graph);
-            } else if (cmdString.startsWith(CommandNames.WORD_STAT)) {
-                processShowNodeStats(cmdString, data.graphMap);
+            if (cmdString.startsWith(CommandNames.INGEST)) {
+                try {
+                    processCommandIngest(cmdString, model, System.out);
+                } catch (RuntimeException ex) {
+                    // The current version stays live.
+                    System.out.println(">>> Warning: " + ex);
+                }
             } else if (cmdString.startsWith(CommandNames.QUIT)) {
-                processCommandQuit();
+                processCommandQuit(System.out);
             } else {
-                System.out.println(
-                        ">>> Warning: \"" + cmdString + "\" has not parsed.");
+                processCommand(cmdString, model, threads, System.out);
             }
         }
     }
     
-    private static void 
+    /**
+     * Runs the commands of {@code scriptFileName}, or of the standard input 
+     * if it is {@code "-"}, back to back until the end of the script or 
+     * {@code quit}. Returns the exit status: {@code 0} if all commands ran, 
+     * {@code 1} if a command was not recognized or failed, and {@code 2} if 
+     * the script could not be read.
+     */
+    private static int batch(LiveSentenceModel model, 
+                             int threads, 
+                             String scriptFileName) {
+        PrintStream out = 
+                new PrintStream(
+                        new BufferedOutputStream(
+                                new FileOutputStream(FileDescriptor.out), 
+                                OUTPUT_BUFFER_SIZE),
+                        false,
+                        System.out.charset());
+        
+        int status = 0;
+        
+        try (BufferedReader in = scriptFileName.equals(STANDARD_INPUT) ?
+                new BufferedReader(new InputStreamReader(System.in)) :
+                Files.newBufferedReader(Path.of(scriptFileName))) {
+            
+            String cmdString;
+            
+            while ((cmdString = in.readLine()) != null) {
+                if (cmdString.isBlank()) {
+                    continue;
+                }
+                
+                if (cmdString.startsWith(CommandNames.QUIT)) {
+                    break;
+                }
+                
+                try {
+                    if (cmdString.startsWith(CommandNames.INGEST)) {
+                        processCommandIngest(cmdString, model, out);
+                    } else if (!processCommand(cmdString, 
+                                               model, 
+                                               threads, 
+                                               out)) {
+                        status = 1;
+                    }
+                } catch (RuntimeException ex) {
+                    out.println(">>> Warning: " + ex);
+                    status = 1;
+                }
+            }
+        } catch (IOException ex) {
+            out.println(ex);
+            status = 2;
+        } finally {
+            out.flush();
+        }
+        
+        return status;
+    }
+    
+    /**
+     * Processes a read-only command against the current version of the 
+     * model, writing the response to {@code out}. Returns {@code false} if 
+     * the command is not recognized.
+     */
+    static boolean processCommand(String cmdString, 
+                               LiveSentenceModel model, 
+                               int threads, 
+                               PrintStream out) {
+        LiveSentenceModel.Version version = model.getCurrentVersion();
+        WordGraph graph = version.getGraph();
+        SentenceSampler sampler = 
+                new MeteredSentenceSampler(version.getSampler());
+        
+        if (cmdString.startsWith(CommandNames.GENERATE_SENTENCE)) {
+            processCommandGenerateSentence(
+                    cmdString, 
+                    sampler, 
+                    new BatchSentenceGenerator(sampler, threads),
+                    version.getAnchoredSampler(),
+                    version.getLengthSampler(),
+                    out);
+        } else if (cmdString.startsWith(
+                CommandNames.GET_NUMBER_OF_SENTENCES)) {
+            
+            processCommandGetNumberOfSentences(
+                    graph.getNumberOfSentences(),
+                    out);
+        
+        } else if (cmdString.startsWith(
+                CommandNames.GET_NUMBER_OF_WORDS)) {
+            processCommandGetNumberOfWords(cmdString, 
+                                           graph, 
+                                           model.getPruningSummary(), 
+                                           out);
+        } else if (cmdString.startsWith(
+                CommandNames.LIST_ALL_WORDS)) {
+            processCommandListAllWords(graph, out);
+        } else if (cmdString.startsWith(
+                CommandNames.LIST_WORD_RANGE)) {
+            processCommandListWordRange(cmdString, graph, out);
+        } else if (cmdString.startsWith(CommandNames.WORD_STAT)) {
+            long startTime = System.nanoTime();
+            processShowNodeStats(cmdString, 
+                                 graph, 
+                                 model.getPruningSummary(), 
+                                 out);
+            Metrics.recordStat(System.nanoTime() - startTime);
+        } else if (cmdString.startsWith(CommandNames.NEXT_WORDS)) {
+            processCommandListTopNeighbours(cmdString, 
+                                            graph, 
+                                            version.getTopNeighbourIndex(), 
+                                            true, 
+                                            out);
+        } else if (cmdString.startsWith(CommandNames.PREVIOUS_WORDS)) {
+            processCommandListTopNeighbours(cmdString, 
+                                            graph, 
+                                            version.getTopNeighbourIndex(), 
+                                            false, 
+                                            out);
+        } else if (cmdString.startsWith(CommandNames.SCORE_FILE)) {
+            processCommandScoreFile(cmdString, 
+                                    version.getScorer(), 
+                                    threads, 
+                                    out);
+        } else if (cmdString.startsWith(CommandNames.SCORE)) {
+            processCommandScore(cmdString, version.getScorer(), out);
+        } else if (cmdString.startsWith(CommandNames.BEST)) {
+            processCommandBest(cmdString, 
+                               new BeamSentenceSearch(
+                                       graph,
+                                       version.getScorer(),
+                                       version.getTopNeighbourIndex(),
+                                       version.getAnchoredSampler()),
+                               out);
+        } else if (cmdString.startsWith(CommandNames.METRICS)) {
+            Metrics.print(out);
+        } else {
+            out.println(
+                    ">>> Warning: \"" + cmdString + "\" has not parsed.");
+            return false;
+        }
+        
+        return true;
+    }
+    
+    private static void
         processCommandGenerateSentence(
                 String cmd,
-                Data data) {
+                SentenceSampler sampler,
+                BatchSentenceGenerator batchSentenceGenerator,
+                AnchoredSentenceSampler anchoredSampler,
+                LengthConditionedSentenceSampler lengthSampler,
+                PrintStream out) {
             String[] lineParts = cmd.trim().split("\\s+");
         
+        if (lineParts.length > 1 
+                && lineParts[1].equals(BATCH_COUNT_FLAG)) {
+            processCommandGenerateSentences(cmd, 
+                                            lineParts, 
+                                            batchSentenceGenerator,
+                                            out);
+            return;
+        }
+        
+        if (lineParts.length > 1 
+                && (lineParts[1].equals(SEED_WORD_FLAG) 
+                    || lineParts[1].equals(MUST_CONTAIN_FLAG))) {
+            processCommandGenerateAnchoredSentence(cmd, 
+                                                   lineParts, 
+                                                   anchoredSampler, 
+                                                   out);
+            return;
+        }
+        
+        if (lineParts.length > 1 && lineParts[1].equals(LENGTH_FLAG)) {
+            processCommandGenerateSentenceOfLength(cmd, 
+                                                   lineParts, 
+                                                   lengthSampler, 
+                                                   out);
+            return;
+        }
+        
         if (!isWithinRange(lineParts.length, 1, 2)) {
-            System.out.println(
+            out.println(
                     ">>> Warning: Command \"" + cmd + "\" not recognized.");
             return;
         }
         
         String commandWord2 = lineParts.length > 1 ? lineParts[1] : null;
         
-        int maximumSentenceLength = 
+        int maximumSentenceLength =
                 commandWord2 != null ?
-                Integer.parseInt(commandWord2) : 
-                Integer.MAX_VALUE; 
+                Integer.parseInt(commandWord2) :
+                Integer.MAX_VALUE;
+        
+        List<String> path;
+        
+        try {
+            path = sampler.sampleSentence(maximumSentenceLength, 
+                                          ThreadLocalRandom.current());
+        } catch (IllegalStateException ex) {
+            out.println(">>> Warning: " + ex.getMessage());
+            return;
+        }
+        
+        if (path.isEmpty()) {
+            out.println(">>> Warning: Could not generate a sentence.");
+            return;
+        }
+        
+        print(path, out);
+    }
+    
+    private static void
+        processCommandGenerateAnchoredSentence(
+                String cmd,
+                String[] lineParts,
+                AnchoredSentenceSampler anchoredSampler,
+                PrintStream out) {
+        // gen (--seed-word | --must-contain) WORD [MAXIMUM_LENGTH]
+        int maximumSentenceLength = Integer.MAX_VALUE;
+        
+        try {
+            if (!isWithinRange(lineParts.length, 3, 4)) {
+                throw new NumberFormatException();
+            }
+            
+            if (lineParts.length == 4) {
+                maximumSentenceLength = Integer.parseInt(lineParts[3]);
+            }
+        } catch (NumberFormatException ex) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        if (maximumSentenceLength < 1) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        String word = lineParts[2];
+        List<String> path;
+        long startTime = System.nanoTime();
+        
+        try {
+            path = lineParts[1].equals(SEED_WORD_FLAG) ?
+                    anchoredSampler.sampleFrom(
+                            word, 
+                            maximumSentenceLength, 
+                            ThreadLocalRandom.current()) :
+                    anchoredSampler.sampleContaining(
+                            word, 
+                            maximumSentenceLength, 
+                            ThreadLocalRandom.current());
+        } catch (IllegalStateException ex) {
+            out.println(">>> Warning: " + ex.getMessage());
+            return;
+        }
+        
+        Metrics.recordGeneratedSentence(path.size(), 
+                                        System.nanoTime() - startTime);
+        print(path, out);
+    }
+    
+    private static void
+        processCommandGenerateSentenceOfLength(
+                String cmd,
+                String[] lineParts,
+                LengthConditionedSentenceSampler lengthSampler,
+                PrintStream out) {
+        // gen --length LENGTH [MAXIMUM_LENGTH]
+        int minimumSentenceLength;
+        int maximumSentenceLength;
+        
+        try {
+            if (!isWithinRange(lineParts.length, 3, 4)) {
+                throw new NumberFormatException();
+            }
+            
+            minimumSentenceLength = Integer.parseInt(lineParts[2]);
+            maximumSentenceLength = 
+                    lineParts.length == 4 ?
+                    Integer.parseInt(lineParts[3]) :
+                    minimumSentenceLength;
+        } catch (NumberFormatException ex) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        if (minimumSentenceLength < 1 
+                || minimumSentenceLength > maximumSentenceLength) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        List<String> path;
+        long startTime = System.nanoTime();
         
-        int currentSentenceLength = 1;
+        try {
+            path = lengthSampler.sampleSentence(minimumSentenceLength, 
+                                                maximumSentenceLength, 
+                                                ThreadLocalRandom.current());
+        } catch (IllegalStateException ex) {
+            out.println(">>> Warning: " + ex.getMessage());
+            return;
+        }
         
-        DirectedWordGraphNode node = data.graphMap.get(".");
-        List<DirectedWordGraphNode> path = new ArrayList<>();
-        path.add(node);
+        Metrics.recordGeneratedSentence(path.size(), 
+                                        System.nanoTime() - startTime);
+        print(path, out);
+    }
+    
+    private static void
+        processCommandGenerateSentences(
+                String cmd,
+                String[] lineParts,
+                BatchSentenceGenerator batchSentenceGenerator,
+                PrintStream out) {
+        // gen -n COUNT [MAXIMUM_LENGTH] [-s SEED]
+        int numberOfSentences;
+        int maximumSentenceLength = Integer.MAX_VALUE;
+        Long seed = null;
         
-        while (currentSentenceLength < maximumSentenceLength) {
-            node = node.sampleParent();
+        try {
+            if (lineParts.length < 3) {
+                throw new NumberFormatException();
+            }
+            
+            numberOfSentences = Integer.parseInt(lineParts[2]);
+            int index = 3;
             
-            if (node == null) {
-                break;
+            if (index < lineParts.length 
+                    && !lineParts[index].equals(BATCH_SEED_FLAG)) {
+                maximumSentenceLength = Integer.parseInt(lineParts[index++]);
             }
             
-            path.add(node);
-            currentSentenceLength++;
+            if (index < lineParts.length) {
+                if (!lineParts[index].equals(BATCH_SEED_FLAG) 
+                        || index + 2 != lineParts.length) {
+                    throw new NumberFormatException();
+                }
+                
+                seed = Long.parseLong(lineParts[index + 1]);
+            }
+        } catch (NumberFormatException ex) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
         }
         
-        Collections.<DirectedWordGraphNode>reverse(path);
-        print(path);
+        if (numberOfSentences < 0 || maximumSentenceLength < 1) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        PrintWriter writer = 
+                new PrintWriter(
+                        new BufferedWriter(
+                                new OutputStreamWriter(out, out.charset()),
+                                OUTPUT_BUFFER_SIZE),
+                        false);
+        
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            batchSentenceGenerator.generate(
+                    numberOfSentences,
+                    maximumSentenceLength,
+                    seed != null ? 
+                            new SplittableRandom(seed) : 
+                            new SplittableRandom(),
+                    path -> {
+                        if (!path.isEmpty()) {
+                            writer.println(">>> " + toSentenceString(path));
+                        }
+                    });
+        } catch (IllegalStateException ex) {
+            out.println(">>> Warning: " + ex.getMessage());
+            return;
+        } finally {
+            writer.flush();
+        }
+        
+        long endTime = System.currentTimeMillis();
+        out.println(
+                ">>> Generated " 
+                        + numberOfSentences 
+                        + " sentences in " 
+                        + (endTime - startTime) 
+                        + " ms.");
     }
+    
+    private static void processCommandScore(String cmd,
+                                            SentenceScorer scorer,
+                                            PrintStream out) {
+        List<String> words = 
+                WordProvider.getWords(
+                        cmd.substring(CommandNames.SCORE.length()));
         
-    private static void 
-        processCommandGetNumberOfSentences(int numberOfSentences) {
-        System.out.println(">>> " + numberOfSentences);
+        if (words.isEmpty()) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        double logProbability = scorer.score(words);
+        
+        out.println(
+                String.format(
+                        Locale.ROOT,
+                        ">>> ln P = %.6f, perplexity = %.4f over %d words.",
+                        logProbability,
+                        Math.exp(-logProbability / words.size()),
+                        words.size()));
     }
+    
+    private static void processCommandBest(String cmd,
+                                           BeamSentenceSearch search,
+                                           PrintStream out) {
+        // best LENGTH [BEAM] [-n COUNT] [--first WORD] [--full-stop]
+        String[] lineParts = cmd.trim().split("\\s+");
+        int length;
+        int beamWidth = DEFAULT_BEAM_WIDTH;
+        int numberOfSentences = 1;
+        String firstWord = null;
+        boolean endWithFullStop = false;
+        
+        try {
+            if (lineParts.length < 2) {
+                throw new NumberFormatException();
+            }
+            
+            length = Integer.parseInt(lineParts[1]);
+            int index = 2;
+            
+            if (index < lineParts.length 
+                    && !lineParts[index].startsWith("-")) {
+                beamWidth = Integer.parseInt(lineParts[index++]);
+            }
+            
+            while (index < lineParts.length) {
+                String flag = lineParts[index++];
+                
+                if (flag.equals(FULL_STOP_FLAG)) {
+                    endWithFullStop = true;
+                } else if (index == lineParts.length) {
+                    throw new NumberFormatException();
+                } else if (flag.equals(BATCH_COUNT_FLAG)) {
+                    numberOfSentences = Integer.parseInt(lineParts[index++]);
+                } else if (flag.equals(FIRST_WORD_FLAG)) {
+                    firstWord = lineParts[index++];
+                } else {
+                    throw new NumberFormatException();
+                }
+            }
+        } catch (NumberFormatException ex) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        if (length < 1 || beamWidth < 1 || numberOfSentences < 1) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        long startTime = System.nanoTime();
+        List<BeamSentenceSearch.Result> results;
+        
+        try {
+            results = search.search(length, 
+                                    beamWidth, 
+                                    numberOfSentences, 
+                                    firstWord, 
+                                    endWithFullStop);
+        } catch (IllegalStateException ex) {
+            out.println(">>> Warning: " + ex.getMessage());
+            return;
+        }
+        
+        long duration = System.nanoTime() - startTime;
+        
+        if (results.isEmpty()) {
+            out.println(
+                    ">>> Warning: No sentence of " 
+                            + length 
+                            + " words found.");
+            return;
+        }
+        
+        for (BeamSentenceSearch.Result result : results) {
+            out.println(
+                    String.format(Locale.ROOT, 
+                                  ">>> %.6f\t", 
+                                  result.getLogProbability())
+                            + toSentenceString(result.getWords()));
+        }
+        
+        out.println(
+                ">>> Found " 
+                        + results.size() 
+                        + " sentences in " 
+                        + Metrics.toMillis(duration) 
+                        + " ms.");
+    }
+    
+    /**
+     * Scores every line of a file as one sentence, printing the natural 
+     * log-probability and the line, followed by the perplexity over all the 
+     * sentences of non-zero probability.
+     */
+    private static void processCommandScoreFile(String cmd,
+                                                SentenceScorer scorer,
+                                                int threads,
+                                                PrintStream out) {
+        String fileName = 
+                cmd.substring(CommandNames.SCORE_FILE.length()).trim();
+        
+        if (fileName.isEmpty()) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        long[] numberOfSentences = new long[2];
+        long[] numberOfWords = new long[1];
+        double[] totalLogProbability = new double[1];
+        long startTime = System.nanoTime();
+        
+        try (BufferedReader reader = 
+                new BufferedReader(
+                        new InputStreamReader(
+                                openFile(Path.of(fileName)), 
+                                StandardCharsets.UTF_8))) {
+            
+            new BatchSentenceScorer(scorer, threads).score(
+                    reader,
+                    (line, words, logProbability) -> {
+                        out.println(
+                                String.format(Locale.ROOT, 
+                                              "%.6f", 
+                                              logProbability)
+                                        + "\t"
+                                        + line);
+                        
+                        // Counts the sentences of zero probability apart.
+                        if (logProbability == Double.NEGATIVE_INFINITY) {
+                            numberOfSentences[1]++;
+                        } else {
+                            numberOfSentences[0]++;
+                            numberOfWords[0] += words;
+                            totalLogProbability[0] += logProbability;
+                        }
+                    });
+        } catch (IOException ex) {
+            out.println(">>> Warning: " + ex);
+            return;
+        }
+        
+        long duration = System.nanoTime() - startTime;
+        Metrics.recordStage("scoring", duration);
+        
+        out.println(
+                String.format(
+                        Locale.ROOT,
+                        ">>> Scored %d sentences with %d words in %d ms, "
+                                + "perplexity = %.4f, %d more sentences "
+                                + "have zero probability.",
+                        numberOfSentences[0],
+                        numberOfWords[0],
+                        Metrics.toMillis(duration),
+                        Math.exp(-totalLogProbability[0] 
+                                / Math.max(1L, numberOfWords[0])),
+                        numberOfSentences[1]));
+    }
+    
+    private static InputStream openFile(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return path.toString().endsWith(".gz") ? 
+               new GZIPInputStream(in, OUTPUT_BUFFER_SIZE) : 
+               in;
+    }
+    
+    private static void processCommandIngest(String cmd, 
+                                             LiveSentenceModel model,
+                                             PrintStream out) {
+        String fileName = cmd.substring(CommandNames.INGEST.length()).trim();
+        
+        if (fileName.isEmpty()) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        List<List<String>> sentences;
+        long startTime = System.nanoTime();
+        
+        try {
+            sentences = WordProvider.getWords(
+                    Corpus.resolve(List.of(fileName)).getSentences());
+        } catch (IOException ex) {
+            out.println(">>> Warning: " + ex);
+            return;
+        }
         
-    private static void processCommandGetNumberOfWords(String cmd, Data data) {
+        LiveSentenceModel.IngestResult result = model.ingest(sentences);
+        long duration = System.nanoTime() - startTime;
+        Metrics.recordStage("ingest", duration);
+        Metrics.recordGraph(result.getVersion().getGraph());
+        
+        out.println(
+                ">>> Ingested " 
+                        + sentences.size() 
+                        + " sentences into version " 
+                        + result.getVersion().getNumber() 
+                        + ", recomputed " 
+                        + result.getNumberOfRecomputedRows() 
+                        + " distributions in " 
+                        + Metrics.toMillis(duration) 
+                        + " ms.");
+    }
+    
+    private static void
+        processCommandGetNumberOfSentences(int numberOfSentences,
+                                           PrintStream out) {
+        out.println(">>> " + numberOfSentences);
+    }
+    
+    private static void 
+        processCommandGetNumberOfWords(String cmd,
+                                       WordGraph graph,
+                                       PruningSummary pruningSummary,
+                                       PrintStream out) {
         String[] parts = cmd.trim().split("\\s+");
         boolean distinct = false;
         
@@ -151,167 +1245,298 @@ final class SentenceGenerator {
             distinct = (parts[1].equals("-d"));
         }
         
-        System.out.println(
-                ">>> " 
-                        + (distinct ? 
-                                data.numberOfDistinctWords :
-                                data.numberOfWords));
+        out.println(
+                ">>> "
+                        + (distinct ?
+                                graph.getNumberOfDistinctWords() :
+                                graph.getNumberOfWords()));
+        
+        if (pruningSummary != null) {
+            out.println(
+                    ">>> Pruned "
+                            + pruningSummary.getNumberOfPrunedWords()
+                            + " words with "
+                            + pruningSummary.getNumberOfPrunedOccurrences()
+                            + " occurrences into \""
+                            + PruningSummary.UNKNOWN_WORD
+                            + "\", and "
+                            + pruningSummary.getNumberOfPrunedArcs()
+                            + " arcs with "
+                            + pruningSummary.getNumberOfPrunedArcOccurrences()
+                            + " occurrences.");
+        }
     }
     
-    private static void 
-        processCommandListAllWords(List<DirectedWordGraphNode> graph) {
-        graph.forEach(System.out::println);
+    private static void processCommandListAllWords(WordGraph graph,
+                                                   PrintStream out) {
+        for (int wordId = 0;
+                wordId < graph.getNumberOfDistinctWords();
+                wordId++) {
+            out.println(graph.getWord(wordId));
+        }
     }
     
-    private static void 
+    private static void
         processCommandListWordRange(
                 String cmd,
-                List<DirectedWordGraphNode> graph) {
-            
+                WordGraph graph,
+                PrintStream out) {
+        
         String[] parts = cmd.trim().split("\\s+");
         
         if (!isWithinRange(parts.length, 2, 3)) {
-            System.out.println("Command \"" + cmd + "\" could not be parsed.");
+            out.println("Command \"" + cmd + "\" could not be parsed.");
             return;
         }
         
         int index1;
         int index2;
+        int numberOfDistinctWords = graph.getNumberOfDistinctWords();
         
         try {
             index1 = Integer.parseInt(parts[1]);
         } catch (NumberFormatException ex) {
-            System.out.println(parts[1] + " is not an index expression.");
+            out.println(parts[1] + " is not an index expression.");
             return;
         }
         
-        if (!isWithinRange(index1, 0, graph.size() - 1)) {
-            System.out.println(
-                    "Index " 
+        if (!isWithinRange(index1, 0, numberOfDistinctWords - 1)) {
+            out.println(
+                    "Index "
                             + index1
-                            + " is not within bounds: " 
+                            + " is not within bounds: "
                             + index1
-                            + ", words: " 
-                            + graph.size() 
+                            + ", words: "
+                            + numberOfDistinctWords
                             + ".");
             return;
         }
         
         if (parts.length == 2) {
-            System.out.println(graph.get(index1).getWord());
+            out.println(graph.getWord(index1));
             return;
         }
         
         try {
             index2 = Integer.parseInt(parts[2]);
         } catch (NumberFormatException ex) {
-            System.out.println(parts[2] + " is not an index expression.");
+            out.println(parts[2] + " is not an index expression.");
             return;
         }
         
-        if (!isWithinRange(index2, 0, graph.size() - 1)) {
-            System.out.println(
-                    "Index " 
+        if (!isWithinRange(index2, 0, numberOfDistinctWords - 1)) {
+            out.println(
+                    "Index "
                             + index1
-                            + " is not within bounds: " 
+                            + " is not within bounds: "
                             + index1
-                            + ", words: " 
-                            + graph.size() 
+                            + ", words: "
+                            + numberOfDistinctWords
                             + ".");
             return;
         }
         
         if (index1 > index2) {
-            System.out.println(">>> Indices are reversed.");
+            out.println(">>> Indices are reversed.");
             return;
         }
         
         for (int i = index1; i <= index2; i++) {
-            System.out.println(graph.get(i));
+            out.println(graph.getWord(i));
         }
     }
+    
+    private static void
+        processCommandListTopNeighbours(
+                String cmd,
+                WordGraph graph,
+                TopNeighbourIndex index,
+                boolean children,
+                PrintStream out) {
+        // (next | prev) WORD [K]
+        String[] parts = cmd.trim().split("\\s+");
+        int k = DEFAULT_NUMBER_OF_NEIGHBOURS;
         
-    private static void 
-        processShowNodeStats(
-                String cmd, 
-                Map<String, DirectedWordGraphNode> graphMap) {
+        try {
+            if (!isWithinRange(parts.length, 2, 3)) {
+                throw new NumberFormatException();
+            }
             
-        String[] parts = cmd.split("\\s+");
+            if (parts.length == 3) {
+                k = Integer.parseInt(parts[2]);
+            }
+        } catch (NumberFormatException ex) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
+        if (k < 1) {
+            out.println(
+                    ">>> Warning: Command \"" + cmd + "\" not recognized.");
+            return;
+        }
+        
         String word = parts[1];
-        DirectedWordGraphNode node = graphMap.get(word);
+        int wordId = graph.getWordId(word);
         
-        if (node == null) {
-            System.out.println("\"" + word + "\": no such word.");
+        if (wordId == -1) {
+            out.println("\"" + word + "\": no such word.");
             return;
         }
         
-        System.out.println("--- Outgoing word arcs:");
+        int numberOfNeighbours = 
+                Math.min(k, 
+                         children ? 
+                                 index.getNumberOfChildren(wordId) : 
+                                 index.getNumberOfParents(wordId));
         
-        BinaryTreeProbabilityDistribution.FieldLengths fieldLengths = 
-                node.getChildProbabilityDistribution().getFieldLengths();
+        int maximumWordLength = 0;
         
-        double totalWeight = 
-                node.getChildProbabilityDistribution()
-                    .getTotalWeight();
+        for (int rank = 0; rank < numberOfNeighbours; rank++) {
+            int neighbourId = children ? 
+                    index.getChild(wordId, rank) : 
+                    index.getParent(wordId, rank);
+            
+            maximumWordLength = 
+                    Math.max(maximumWordLength, 
+                             graph.getWord(neighbourId).length());
+        }
         
-        List<DirectedWordGraphNode> children = 
-                new ArrayList<>(node.getChildren());
+        out.println(children ? 
+                "--- Most probable next words:" : 
+                "--- Most probable previous words:");
         
-        Collections.<DirectedWordGraphNode>sort(children);
+        String fmt = "%-" + Math.max(1, maximumWordLength) + "s, p = %f";
+        
+        for (int rank = 0; rank < numberOfNeighbours; rank++) {
+            int neighbourId;
+            double probability;
+            
+            if (children) {
+                neighbourId = index.getChild(wordId, rank);
+                probability = index.getChildProbability(wordId, rank);
+            } else {
+                neighbourId = index.getParent(wordId, rank);
+                probability = index.getParentProbability(wordId, rank);
+            }
+            
+            out.println(String.format(fmt, 
+                                      graph.getWord(neighbourId), 
+                                      probability));
+        }
+    }
+    
+    private static void
+        processShowNodeStats(
+                String cmd,
+                WordGraph graph,
+                PruningSummary pruningSummary,
+                PrintStream out) {
+        
+        String[] parts = cmd.split("\\s+");
+        String word = parts[1];
+        int wordId = graph.getWordId(word);
+        
+        if (wordId == -1) {
+            out.println("\"" + word + "\": no such word.");
+            return;
+        }
+        
+        out.println("--- Outgoing word arcs:");
+        
+        int numberOfChildren = graph.getNumberOfChildren(wordId);
+        int[] childIndices = getIndicesSortedByWordId(graph, wordId, true);
+        int maximumWordLength = 0;
+        int maximumWeightLength = 0;
+        
+        for (int i = 0; i < numberOfChildren; i++) {
+            maximumWordLength =
+                    Math.max(maximumWordLength,
+                             graph.getWord(graph.getChild(wordId, i))
+                                  .length());
+            
+            maximumWeightLength =
+                    Math.max(maximumWeightLength,
+                             getWeightLength(
+                                     graph.getChildWeight(wordId, i)));
+        }
+        
+        double totalWeight = graph.getTotalChildWeight(wordId);
         
         String fmt =
-                "%-" 
-                + fieldLengths.maximumWordLength
-                + "s, w = %.0" 
-                + fieldLengths.maximumWeightLength
+                "%-"
+                + maximumWordLength
+                + "s, w = %.0"
+                + maximumWeightLength
                 + "f, p = %f";
         
-        for (DirectedWordGraphNode child : children) {
-            System.out.println(
+        for (int index : childIndices) {
+            double weight = graph.getChildWeight(wordId, index);
+            
+            out.println(
                     String.format(
-                            fmt, 
-                            child.getWord(), 
-                            child.getChildWeight(node),
-                            child.getChildWeight(node) / totalWeight));
+                            fmt,
+                            graph.getWord(graph.getChild(wordId, index)),
+                            weight,
+                            weight / totalWeight));
         }
         
-        System.out.println("Total of " + children.size() + " outgoing arcs.");
-        children.clear();
+        out.println("Total of " + numberOfChildren + " outgoing arcs.");
         
-        System.out.println("--- Incoming word arcs:");
+        out.println("--- Incoming word arcs:");
         
-        fieldLengths = node.getParentProbabilityDistribution()
-                           .getFieldLengths();
+        int numberOfParents = graph.getNumberOfParents(wordId);
+        int[] parentIndices = getIndicesSortedByWordId(graph, wordId, false);
+        maximumWordLength = 0;
+        maximumWeightLength = 0;
         
-        List<DirectedWordGraphNode> parents =
-                new ArrayList<>(node.getParents()); 
-        
-        Collections.<DirectedWordGraphNode>sort(parents);
+        for (int i = 0; i < numberOfParents; i++) {
+            maximumWordLength =
+                    Math.max(maximumWordLength,
+                             graph.getWord(graph.getParent(wordId, i))
+                                  .length());
+            
+            maximumWeightLength =
+                    Math.max(maximumWeightLength,
+                             getWeightLength(
+                                     graph.getParentWeight(wordId, i)));
+        }
         
         fmt =
-                "%-" 
-                + fieldLengths.maximumWordLength
-                + "s, w = %.0" 
-                + fieldLengths.maximumWeightLength 
+                "%-"
+                + maximumWordLength
+                + "s, w = %.0"
+                + maximumWeightLength
                 + "f, p = %f";
         
-        totalWeight = node.getParentProbabilityDistribution().getTotalWeight();
+        totalWeight = graph.getTotalParentWeight(wordId);
         
-        for (DirectedWordGraphNode parent : parents) {
-            System.out.println(
+        for (int index : parentIndices) {
+            double weight = graph.getParentWeight(wordId, index);
+            
+            out.println(
                     String.format(
-                            fmt, 
-                            parent.getWord(),
-                            parent.getParentWeight(node),
-                            parent.getParentWeight(node) / totalWeight));
+                            fmt,
+                            graph.getWord(graph.getParent(wordId, index)),
+                            weight,
+                            weight / totalWeight));
         }
         
-        System.out.println("Total of " + parents.size() + " incoming arcs.");
-        parents.clear();
-    }
+        out.println("Total of " + numberOfParents + " incoming arcs.");
         
-    private static void processCommandQuit() {
-        System.out.println(">>> Bye!");
+        if (pruningSummary != null) {
+            out.println(
+                    "Pruned "
+                            + pruningSummary.getNumberOfPrunedChildArcs(word)
+                            + " outgoing and "
+                            + pruningSummary.getNumberOfPrunedParentArcs(word)
+                            + " incoming arcs.");
+        }
+    }
+    
+    private static void processCommandQuit(PrintStream out) {
+        out.println(">>> Bye!");
         System.exit(0);
     }
     
@@ -319,20 +1544,56 @@ final class SentenceGenerator {
         return !(value < min || value > max);
     }
     
-    private static void print(List<DirectedWordGraphNode> path) {
-        DirectedWordGraphNode node = path.get(0);
+    private static int getWeightLength(int weight) {
+        return Double.toString(weight).length();
+    }
+    
+    // Word IDs are alphabetical, so sorting the arcs by the neighbour ID lists
+    // them alphabetically.
+    private static int[] getIndicesSortedByWordId(WordGraph graph,
+                                                  int wordId,
+                                                  boolean children) {
+        int size = children ?
+                   graph.getNumberOfChildren(wordId) :
+                   graph.getNumberOfParents(wordId);
+        
+        long[] keys = new long[size];
+        
+        for (int i = 0; i < size; i++) {
+            long neighbourId = children ?
+                               graph.getChild(wordId, i) :
+                               graph.getParent(wordId, i);
+            
+            keys[i] = (neighbourId << 32) | i;
+        }
+        
+        Arrays.sort(keys);
+        int[] indices = new int[size];
+        
+        for (int i = 0; i < size; i++) {
+            indices[i] = (int) keys[i];
+        }
+        
+        return indices;
+    }
+    
+    private static void print(List<String> path, PrintStream out) {
+        out.println(">>> " + toSentenceString(path));
+    }
+    
+    private static String toSentenceString(List<String> path) {
+        String word = path.get(0);
         
-        StringBuilder stringBuilder = 
+        StringBuilder stringBuilder =
                 new StringBuilder()
-                .append(Character.toUpperCase(
-                        node.getWord().charAt(0)))
-                .append(node.getWord().substring(1));
+                .append(Character.toUpperCase(word.charAt(0)))
+                .append(word.substring(1));
         
         for (int i = 1; i < path.size(); i++) {
             stringBuilder.append(" ")
-                         .append(path.get(i).getWord());
+                         .append(path.get(i));
         }
         
-        System.out.println(">>> " + stringBuilder.toString());
+        return stringBuilder.toString();
     }
 }
@@ -2,49 +2,193 @@ package com.github.coderodde.ai.sentencegenerator;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 final class SentenceProducer {
     
     private static final String SPLIT_REGEX = "\\s*(\\.|\\?|;|!|—)\\s*";
     
+    private static final long MAPPING_WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final String GZIP_SUFFIX = ".gz";
+    
     private final File file;
     
     public SentenceProducer(String fileName) {
         this.file = new File(fileName);
     }
     
+    public SentenceProducer(Path path) {
+        this.file = path.toFile();
+    }
+    
     public List<String> getSentences() throws IOException {
-        String allText = Files.readString(file.toPath());
+        String allText = getText();
         return splitEntireTextToSentences(allText);
     }
     
-    private static List<String> splitEntireTextToSentences(String text) {
-        char[] chars = text.toCharArray();
-        List<String> sentences = new ArrayList<>();
+    public String getText() throws IOException {
+        if (!isCompressed()) {
+            return Files.readString(file.toPath());
+        }
+        
+        try (InputStream in = openCompressed()) {
+            return newDecoder().decode(ByteBuffer.wrap(in.readAllBytes()))
+                               .toString();
+        }
+    }
+    
+    public void forEachSentence(Consumer<String> sentenceConsumer) 
+            throws IOException {
+        
+        CharsetDecoder decoder = newDecoder();
+        CharBuffer charBuffer = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        StringBuilder sentenceBuilder = new StringBuilder();
+        
+        if (isCompressed()) {
+            try (Reader reader = new InputStreamReader(openCompressed(), 
+                                                       decoder)) {
+                while (reader.read(charBuffer) != -1) {
+                    emitSentences(charBuffer, 
+                                  sentenceBuilder, 
+                                  sentenceConsumer);
+                }
+            }
+            
+            return;
+        }
         
-        outerLoop:
-        for (int i = 0; i < chars.length; i++) {
-            StringBuilder stringBuilder = new StringBuilder();
+        try (FileChannel channel = FileChannel.open(file.toPath(), 
+                                                    StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0L;
             
-            for (int j = i; j < chars.length; j++, i++) {
-                char ch = chars[j];
+            do {
+                long windowSize = Math.min(MAPPING_WINDOW_SIZE, 
+                                           fileSize - position);
+                
+                boolean endOfInput = position + windowSize == fileSize;
+                MappedByteBuffer window = 
+                        channel.map(FileChannel.MapMode.READ_ONLY, 
+                                    position, 
+                                    windowSize);
+                
+                CoderResult coderResult;
                 
-                switch (ch) {
-                    case '.', '?', '!' -> {
-                        stringBuilder.append(ch);
-                        String newSentence = stringBuilder.toString();
-                        sentences.add(newSentence);
-                        continue outerLoop;
+                do {
+                    coderResult = decoder.decode(window, 
+                                                 charBuffer, 
+                                                 endOfInput);
+                    
+                    if (coderResult.isError()) {
+                        coderResult.throwException();
                     }
                     
-                    default -> stringBuilder.append(ch);
+                    emitSentences(charBuffer, 
+                                  sentenceBuilder, 
+                                  sentenceConsumer);
+                } while (coderResult.isOverflow());
+                
+                // A character split by the window boundary is decoded from
+                // the beginning of the next window.
+                position += window.position();
+                
+                if (endOfInput) {
+                    decoder.flush(charBuffer);
+                    emitSentences(charBuffer, 
+                                  sentenceBuilder, 
+                                  sentenceConsumer);
+                    return;
                 }
+            } while (true);
+        }
+    }
+    
+    private boolean isCompressed() {
+        return file.getName().endsWith(GZIP_SUFFIX);
+    }
+    
+    private InputStream openCompressed() throws IOException {
+        return new GZIPInputStream(Files.newInputStream(file.toPath()), 
+                                   GZIP_BUFFER_SIZE);
+    }
+    
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8
+                               .newDecoder()
+                               .onMalformedInput(CodingErrorAction.REPORT)
+                               .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+    
+    static List<String> splitEntireTextToSentences(String text) {
+        return splitTextToSentences(text, 0, text.length());
+    }
+    
+    static List<String> splitTextToSentences(String text,
+                                             int fromIndex, 
+                                             int toIndex) {
+        List<String> sentences = new ArrayList<>();
+        int sentenceStartIndex = fromIndex;
+        
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (isSentenceTerminator(text.charAt(i))) {
+                sentences.add(text.substring(sentenceStartIndex, i + 1));
+                sentenceStartIndex = i + 1;
             }
         }
         
         return sentences;
     }
+    
+    private static void emitSentences(CharBuffer charBuffer,
+                                      StringBuilder sentenceBuilder,
+                                      Consumer<String> sentenceConsumer) {
+        charBuffer.flip();
+        
+        char[] chars = charBuffer.array();
+        int sentenceStartIndex = 0;
+        int limit = charBuffer.limit();
+        
+        for (int i = 0; i < limit; i++) {
+            if (isSentenceTerminator(chars[i])) {
+                sentenceBuilder.append(chars, 
+                                       sentenceStartIndex, 
+                                       i + 1 - sentenceStartIndex);
+                
+                sentenceConsumer.accept(sentenceBuilder.toString());
+                sentenceBuilder.setLength(0);
+                sentenceStartIndex = i + 1;
+            }
+        }
+        
+        sentenceBuilder.append(chars, 
+                               sentenceStartIndex, 
+                               limit - sentenceStartIndex);
+        charBuffer.clear();
+    }
+    
+    static boolean isSentenceTerminator(char ch) {
+        return switch (ch) {
+            case '.', '?', '!' -> true;
+            default -> false;
+        };
+    }
 }
@@ -0,0 +1,14 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+interface SentenceSampler {
+    
+    /**
+     * Samples a sentence of at most {@code maximumSentenceLength} words,
+     * including the final punctuation, in the reading order.
+     */
+    List<String> sampleSentence(int maximumSentenceLength, 
+                                RandomGenerator random);
+}
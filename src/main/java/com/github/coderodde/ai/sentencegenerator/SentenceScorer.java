@@ -0,0 +1,234 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scores sentences under the bigram model of a word graph. The natural
+ * log-probability of a sentence {@code w1 w2 ... wn} is
+ * {@code ln P(w1) + ln P(w2 | w1) + ... + ln P(wn | wn-1)}, where
+ * {@code P(w1)} is the fraction of the sentences that start with
+ * {@code w1}, and every other factor is the weight of the arc between the
+ * two words divided by the total child weight of the first one.
+ * <p>
+ * A smoothed scorer uses interpolated Kneser-Ney instead: the weight of
+ * every arc is lowered by an absolute discount {@code D}, and the freed mass
+ * {@code D * children(v) / weight(v)} of a word {@code v} is spread over all
+ * words in proportion to their continuation probability, that is, the
+ * number of distinct parents of a word divided by the number of arcs, where
+ * the sentence start counts as a parent. The sentence starts are smoothed
+ * the same way. {@code D} is estimated as
+ * {@code n1 / (n1 + 2 * n2)}, where {@code n1} and {@code n2} are the
+ * numbers of arcs of weight one and two.
+ * <p>
+ * All log-probabilities are computed once, and the children of every word
+ * are kept sorted by the word ID, so scoring a sentence costs one word
+ * lookup and one binary search per word; an unseen bigram adds the log
+ * backoff weight of the first word and the log continuation probability of
+ * the second one, which are two array reads. A sentence with an unknown word
+ * has the log-probability {@code -Infinity}, and so does an unseen bigram
+ * unless the scorer is smoothed.
+ */
+final class SentenceScorer {
+    
+    // The usual discount when there are too few arcs to estimate one.
+    private static final double DEFAULT_DISCOUNT = 0.75;
+    
+    private final WordGraph graph;
+    private final double discount;
+    private final double[] startLogProbabilities;
+    private final double[] backoffLogWeights;
+    private final double[] continuationLogProbabilities;
+    private final int[] childOffsets;
+    private final int[] childIds;
+    private final double[] childLogProbabilities;
+    
+    public SentenceScorer(WordGraph graph) {
+        this(graph, false);
+    }
+    
+    /**
+     * Creates a scorer over {@code graph}, smoothed with interpolated
+     * Kneser-Ney if {@code smoothed} is {@code true}.
+     */
+    public SentenceScorer(WordGraph graph, boolean smoothed) {
+        int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+        this.graph = graph;
+        this.startLogProbabilities = new double[numberOfDistinctWords];
+        this.backoffLogWeights = new double[numberOfDistinctWords];
+        this.continuationLogProbabilities = new double[numberOfDistinctWords];
+        this.childOffsets = new int[numberOfDistinctWords + 1];
+        
+        int numberOfStartWords = 0;
+        long numberOfWeightOneArcs = 0L;
+        long numberOfWeightTwoArcs = 0L;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            int numberOfChildren = graph.getNumberOfChildren(wordId);
+            childOffsets[wordId + 1] = childOffsets[wordId] + numberOfChildren;
+            
+            if (graph.getNumberOfStarts(wordId) > 0) {
+                numberOfStartWords++;
+            }
+            
+            for (int i = 0; i < numberOfChildren; i++) {
+                int weight = graph.getChildWeight(wordId, i);
+                
+                if (weight == 1) {
+                    numberOfWeightOneArcs++;
+                } else if (weight == 2) {
+                    numberOfWeightTwoArcs++;
+                }
+            }
+        }
+        
+        int numberOfArcs = childOffsets[numberOfDistinctWords];
+        
+        if (!smoothed) {
+            this.discount = 0.0;
+        } else if (numberOfWeightOneArcs > 0L && numberOfWeightTwoArcs > 0L) {
+            this.discount =
+                    numberOfWeightOneArcs
+                            / (numberOfWeightOneArcs
+                                    + 2.0 * numberOfWeightTwoArcs);
+        } else {
+            this.discount = DEFAULT_DISCOUNT;
+        }
+        
+        double[] continuationProbabilities = new double[numberOfDistinctWords];
+        
+        // The sentence start counts as one more parent, so that every known
+        // word has a positive continuation probability.
+        double numberOfContinuations = numberOfArcs + numberOfStartWords;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            int numberOfParents = graph.getNumberOfParents(wordId)
+                    + (graph.getNumberOfStarts(wordId) > 0 ? 1 : 0);
+            
+            continuationProbabilities[wordId] =
+                    numberOfParents / numberOfContinuations;
+            
+            continuationLogProbabilities[wordId] =
+                    Math.log(continuationProbabilities[wordId]);
+        }
+        
+        double numberOfSentences = graph.getNumberOfSentences();
+        double startBackoffWeight =
+                discount * numberOfStartWords / numberOfSentences;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            startLogProbabilities[wordId] =
+                    Math.log(Math.max(0.0,
+                                      graph.getNumberOfStarts(wordId)
+                                              - discount)
+                                     / numberOfSentences
+                             + startBackoffWeight
+                                     * continuationProbabilities[wordId]);
+        }
+        
+        this.childIds = new int[numberOfArcs];
+        this.childLogProbabilities = new double[numberOfArcs];
+        long[] row = new long[0];
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            int numberOfChildren = graph.getNumberOfChildren(wordId);
+            double totalWeight = graph.getTotalChildWeight(wordId);
+            
+            // A word without children, such as a terminator, passes all of
+            // its mass on to the continuation distribution.
+            double backoffWeight =
+                    !smoothed ?
+                    0.0 :
+                    numberOfChildren == 0 ?
+                    1.0 :
+                    discount * numberOfChildren / totalWeight;
+            
+            backoffLogWeights[wordId] = Math.log(backoffWeight);
+            
+            if (row.length < numberOfChildren) {
+                row = new long[numberOfChildren];
+            }
+            
+            // Sorts the children by the ID and carries along their index.
+            for (int i = 0; i < numberOfChildren; i++) {
+                row[i] = ((long) graph.getChild(wordId, i) << 32) | i;
+            }
+            
+            Arrays.sort(row, 0, numberOfChildren);
+            int offset = childOffsets[wordId];
+            
+            for (int i = 0; i < numberOfChildren; i++) {
+                int childId = (int) (row[i] >>> 32);
+                int weight = graph.getChildWeight(wordId, (int) row[i]);
+                childIds[offset + i] = childId;
+                childLogProbabilities[offset + i] =
+                        Math.log((weight - discount) / totalWeight
+                                 + backoffWeight
+                                         * continuationProbabilities[childId]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the absolute discount of the smoothing, or {@code 0} if the
+     * scorer is not smoothed.
+     */
+    public double getDiscount() {
+        return discount;
+    }
+    
+    public boolean isSmoothed() {
+        return discount > 0.0;
+    }
+    
+    /**
+     * Returns the natural log-probability of {@code words}, or {@code 0} if
+     * there are none.
+     */
+    public double score(List<String> words) {
+        if (words.isEmpty()) {
+            return 0.0;
+        }
+        
+        int previousWordId = graph.getWordId(words.get(0));
+        
+        if (previousWordId == -1) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        
+        double logProbability = startLogProbabilities[previousWordId];
+        
+        for (int i = 1; i < words.size(); i++) {
+            int wordId = graph.getWordId(words.get(i));
+            
+            if (wordId == -1) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            
+            logProbability += getLogProbability(previousWordId, wordId);
+            previousWordId = wordId;
+        }
+        
+        return logProbability;
+    }
+    
+    /**
+     * Returns the natural log-probability that {@code childId} follows
+     * {@code parentId}.
+     */
+    public double getLogProbability(int parentId, int childId) {
+        int index = Arrays.binarySearch(childIds,
+                                        childOffsets[parentId],
+                                        childOffsets[parentId + 1],
+                                        childId);
+        
+        return index < 0 ?
+               backoffLogWeights[parentId]
+                       + continuationLogProbabilities[childId] :
+               childLogProbabilities[index];
+    }
+    
+    public double getStartLogProbability(int wordId) {
+        return startLogProbabilities[wordId];
+    }
+}
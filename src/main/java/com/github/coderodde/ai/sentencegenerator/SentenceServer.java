@@ -0,0 +1,107 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the read-only REPL commands over TCP with a line protocol. Each
+ * request is a single command line, such as {@code gen 20} or
+ * {@code stat the}, and its response is the output the REPL would print,
+ * terminated by an empty line. A connection may send any number of requests
+ * and ends with {@code quit} or by closing the socket.
+ * <p>
+ * Every connection runs on its own virtual thread. The handlers share the
+ * model and only read the version current at the start of each request.
+ */
+final class SentenceServer {
+    
+    private static final String QUIT = "quit";
+    private static final String INGEST = "ingest";
+    private static final String SCORE_FILE = "score-file";
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 13;
+    private static final int BACKLOG = 1024;
+    
+    private final LiveSentenceModel model;
+    private final int threads;
+    
+    public SentenceServer(LiveSentenceModel model, int threads) {
+        this.model = model;
+        this.threads = threads;
+    }
+    
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG);
+             ExecutorService executor =
+                     Executors.newVirtualThreadPerTaskExecutor()) {
+            
+            while (true) {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> handle(socket));
+            }
+        }
+    }
+    
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in =
+                     new BufferedReader(
+                             new InputStreamReader(
+                                     socket.getInputStream(),
+                                     StandardCharsets.UTF_8));
+             PrintStream out =
+                     new PrintStream(
+                             new BufferedOutputStream(
+                                     socket.getOutputStream(),
+                                     OUTPUT_BUFFER_SIZE),
+                             false,
+                             StandardCharsets.UTF_8)) {
+            
+            socket.setTcpNoDelay(true);
+            String line;
+            
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                
+                if (line.startsWith(QUIT)) {
+                    out.println(">>> Bye!");
+                    out.println();
+                    break;
+                }
+                
+                if (line.startsWith(INGEST)) {
+                    out.println(
+                            ">>> Warning: \""
+                                    + INGEST
+                                    + "\" is not available in server mode.");
+                } else if (line.startsWith(SCORE_FILE)) {
+                    out.println(
+                            ">>> Warning: \""
+                                    + SCORE_FILE
+                                    + "\" is not available in server mode.");
+                } else {
+                    try {
+                        SentenceGenerator.processCommand(line,
+                                                         model,
+                                                         threads,
+                                                         out);
+                    } catch (RuntimeException ex) {
+                        out.println(">>> Warning: " + ex);
+                    }
+                }
+                
+                out.println();
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // The client went away; nothing to answer.
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts bigrams approximately within a fixed memory budget. Every bigram
+ * goes into a {@link CountMinSketch}, and a bigram is promoted to an exact
+ * counter in a preallocated candidate table once its estimated count reaches
+ * the threshold. The count of a promoted bigram is its estimate at the time
+ * of the promotion plus its exact count afterwards, so it exceeds the true
+ * count at most by the error of a single sketch estimate.
+ * <p>
+ * Half of the budget goes to the sketch and half to the candidate table.
+ * When the table is full, no more bigrams are promoted. The vocabulary, the
+ * word counts and the sentence start counts are kept exactly.
+ */
+final class SketchWordGraphBuilder {
+    
+    private static final int SKETCH_DEPTH = 4;
+    
+    // A key, a value and an occupancy flag per slot.
+    private static final int CANDIDATE_SLOT_BYTES =
+            Long.BYTES + Integer.BYTES + 1;
+    
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final CountMinSketch sketch;
+    private final LongIntHashMap candidates;
+    private final int maximumNumberOfCandidates;
+    private final int threshold;
+    private int[] wordCounts = new int[16];
+    private int[] startCounts = new int[16];
+    private int numberOfSentences;
+    private int numberOfWords;
+    private long numberOfRejectedPromotions;
+    
+    public SketchWordGraphBuilder(long memoryBudgetInBytes, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException(
+                    "The threshold must be at least 1. Received " + threshold);
+        }
+        
+        long halfBudget = memoryBudgetInBytes / 2;
+        
+        this.sketch = new CountMinSketch(
+                SKETCH_DEPTH,
+                CountMinSketch.getWidth(SKETCH_DEPTH, halfBudget));
+        
+        int capacity =
+                Integer.highestOneBit(
+                        (int) Math.max(
+                                2L,
+                                Math.min(halfBudget / CANDIDATE_SLOT_BYTES,
+                                         1 << 30)));
+        
+        // The table grows only beyond half of its capacity.
+        this.maximumNumberOfCandidates = capacity / 2;
+        this.candidates = new LongIntHashMap(maximumNumberOfCandidates);
+        this.threshold = threshold;
+    }
+    
+    public void addSentences(List<List<String>> sentenceList) {
+        for (List<String> sentence : sentenceList) {
+            addSentence(sentence);
+        }
+    }
+    
+    public void addSentence(List<String> sentence) {
+        numberOfSentences++;
+        numberOfWords += sentence.size();
+        long previousWordId = -1L;
+        
+        for (String word : sentence) {
+            int wordId = symbolTable.getOrAddId(word);
+            
+            if (wordId == wordCounts.length) {
+                wordCounts = Arrays.copyOf(wordCounts, 2 * wordCounts.length);
+                startCounts = Arrays.copyOf(startCounts, wordCounts.length);
+            }
+            
+            wordCounts[wordId]++;
+            
+            if (previousWordId != -1L) {
+                addBigram((previousWordId << 32) | wordId);
+            } else {
+                startCounts[wordId]++;
+            }
+            
+            previousWordId = wordId;
+        }
+    }
+    
+    /**
+     * Returns a builder holding the promoted bigrams with their counts.
+     */
+    public WordGraphBuilder toWordGraphBuilder() {
+        return new WordGraphBuilder(symbolTable,
+                                    candidates,
+                                    wordCounts,
+                                    startCounts,
+                                    numberOfSentences,
+                                    numberOfWords);
+    }
+    
+    public int getNumberOfCandidates() {
+        return candidates.size();
+    }
+    
+    public long getNumberOfRejectedPromotions() {
+        return numberOfRejectedPromotions;
+    }
+    
+    public long getSizeInBytes() {
+        return sketch.getSizeInBytes()
+                + 2L * maximumNumberOfCandidates * CANDIDATE_SLOT_BYTES;
+    }
+    
+    public CountMinSketch getSketch() {
+        return sketch;
+    }
+    
+    /**
+     * Returns the additive error that no count exceeds with probability at
+     * least {@code 1 - getSketch().getDelta()} per count.
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(sketch.getEpsilon() * sketch.getTotalCount());
+    }
+    
+    private void addBigram(long key) {
+        if (candidates.containsKey(key)) {
+            candidates.add(key, 1);
+            return;
+        }
+        
+        int estimate = sketch.increment(key);
+        
+        if (estimate < threshold) {
+            return;
+        }
+        
+        if (candidates.size() < maximumNumberOfCandidates) {
+            candidates.put(key, estimate);
+        } else {
+            numberOfRejectedPromotions++;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+
+/**
+ * Maps words to dense integer IDs in the order of their first appearance.
+ * The words are kept in an open-addressing hash table with linear probing,
+ * so a lookup costs one hash of the word and no allocation.
+ */
+final class SymbolTable {
+    
+    private static final int EMPTY_SLOT = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
+    private int size;
+    
+    public SymbolTable() {
+        Arrays.fill(slots, EMPTY_SLOT);
+    }
+    
+    public int getId(String symbol) {
+        return slots[findSlot(symbol)];
+    }
+    
+    public int getOrAddId(String symbol) {
+        int slot = findSlot(symbol);
+        
+        if (slots[slot] != EMPTY_SLOT) {
+            return slots[slot];
+        }
+        
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, 2 * size);
+        }
+        
+        symbols[size] = symbol;
+        slots[slot] = size;
+        
+        if (2 * ++size > slots.length) {
+            rehash();
+        }
+        
+        return size - 1;
+    }
+    
+    public String getSymbol(int id) {
+        return symbols[id];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private int findSlot(String symbol) {
+        int hash = symbol.hashCode() * 0x9e3779b9;
+        int mask = slots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        
+        while (slots[slot] != EMPTY_SLOT
+                && !symbols[slots[slot]].equals(symbol)) {
+            slot = (slot + 1) & mask;
+        }
+        
+        return slot;
+    }
+    
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        Arrays.fill(slots, EMPTY_SLOT);
+        
+        for (int id = 0; id < size; id++) {
+            slots[findSlot(symbols[id])] = id;
+        }
+    }
+}
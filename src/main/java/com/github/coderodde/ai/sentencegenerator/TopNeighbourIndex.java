@@ -0,0 +1,179 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the children and the parents of every word of a word graph sorted by
+ * the descending arc weight, ties broken by the word ID, so that the
+ * {@code k} most probable next or previous words are the first {@code k}
+ * entries of a row. The rows are stored in compressed sparse row form and
+ * sorted once when the index is built. The row entries of an
+ * {@link OffHeapWordGraph} are kept off the heap as well, as interleaved
+ * pairs of a word ID and a weight.
+ */
+final class TopNeighbourIndex {
+    
+    private final WordGraph graph;
+    private final int[] childOffsets;
+    private final int[] childIds;
+    private final int[] childWeights;
+    private final int[] parentOffsets;
+    private final int[] parentIds;
+    private final int[] parentWeights;
+    
+    // Used instead of the four arrays above for an off-heap graph.
+    private final OffHeapArray offHeapChildEntries;
+    private final OffHeapArray offHeapParentEntries;
+    
+    public TopNeighbourIndex(WordGraph graph) {
+        int numberOfWords = graph.getNumberOfDistinctWords();
+        this.graph = graph;
+        this.childOffsets = new int[numberOfWords + 1];
+        this.parentOffsets = new int[numberOfWords + 1];
+        
+        for (int wordId = 0; wordId < numberOfWords; wordId++) {
+            childOffsets[wordId + 1] =
+                    childOffsets[wordId] + graph.getNumberOfChildren(wordId);
+            
+            parentOffsets[wordId + 1] =
+                    parentOffsets[wordId] + graph.getNumberOfParents(wordId);
+        }
+        
+        int numberOfChildArcs = childOffsets[numberOfWords];
+        int numberOfParentArcs = parentOffsets[numberOfWords];
+        
+        if (graph instanceof OffHeapWordGraph) {
+            this.childIds = null;
+            this.childWeights = null;
+            this.parentIds = null;
+            this.parentWeights = null;
+            this.offHeapChildEntries = 
+                    OffHeapArray.ofInts(2L * numberOfChildArcs);
+            this.offHeapParentEntries = 
+                    OffHeapArray.ofInts(2L * numberOfParentArcs);
+        } else {
+            this.childIds = new int[numberOfChildArcs];
+            this.childWeights = new int[numberOfChildArcs];
+            this.parentIds = new int[numberOfParentArcs];
+            this.parentWeights = new int[numberOfParentArcs];
+            this.offHeapChildEntries = null;
+            this.offHeapParentEntries = null;
+        }
+        
+        long[] row = new long[0];
+        
+        for (int wordId = 0; wordId < numberOfWords; wordId++) {
+            int numberOfChildren = graph.getNumberOfChildren(wordId);
+            
+            if (row.length < numberOfChildren) {
+                row = new long[numberOfChildren];
+            }
+            
+            for (int i = 0; i < numberOfChildren; i++) {
+                row[i] = toSortKey(graph.getChildWeight(wordId, i),
+                                   graph.getChild(wordId, i));
+            }
+            
+            fillRow(row,
+                    numberOfChildren,
+                    childOffsets[wordId],
+                    childIds,
+                    childWeights,
+                    offHeapChildEntries);
+            
+            int numberOfParents = graph.getNumberOfParents(wordId);
+            
+            if (row.length < numberOfParents) {
+                row = new long[numberOfParents];
+            }
+            
+            for (int i = 0; i < numberOfParents; i++) {
+                row[i] = toSortKey(graph.getParentWeight(wordId, i),
+                                   graph.getParent(wordId, i));
+            }
+            
+            fillRow(row,
+                    numberOfParents,
+                    parentOffsets[wordId],
+                    parentIds,
+                    parentWeights,
+                    offHeapParentEntries);
+        }
+    }
+    
+    public int getNumberOfChildren(int wordId) {
+        return childOffsets[wordId + 1] - childOffsets[wordId];
+    }
+    
+    /**
+     * Returns the {@code rank}th most probable child of {@code wordId},
+     * counting from zero.
+     */
+    public int getChild(int wordId, int rank) {
+        int index = childOffsets[wordId] + rank;
+        return childIds != null ? 
+               childIds[index] : 
+               offHeapChildEntries.getInt(2L * index);
+    }
+    
+    public double getChildProbability(int wordId, int rank) {
+        int index = childOffsets[wordId] + rank;
+        int weight = childWeights != null ? 
+                     childWeights[index] : 
+                     offHeapChildEntries.getInt(2L * index + 1);
+        
+        return weight / (double) graph.getTotalChildWeight(wordId);
+    }
+    
+    public int getNumberOfParents(int wordId) {
+        return parentOffsets[wordId + 1] - parentOffsets[wordId];
+    }
+    
+    /**
+     * Returns the {@code rank}th most probable parent of {@code wordId},
+     * counting from zero.
+     */
+    public int getParent(int wordId, int rank) {
+        int index = parentOffsets[wordId] + rank;
+        return parentIds != null ? 
+               parentIds[index] : 
+               offHeapParentEntries.getInt(2L * index);
+    }
+    
+    public double getParentProbability(int wordId, int rank) {
+        int index = parentOffsets[wordId] + rank;
+        int weight = parentWeights != null ? 
+                     parentWeights[index] : 
+                     offHeapParentEntries.getInt(2L * index + 1);
+        
+        return weight / (double) graph.getTotalParentWeight(wordId);
+    }
+    
+    // Orders by the descending weight first and by the ascending word ID
+    // second. Both are non-negative ints.
+    private static long toSortKey(int weight, int wordId) {
+        return ((long) (Integer.MAX_VALUE - weight) << 32) | wordId;
+    }
+    
+    private static void fillRow(long[] row,
+                                int length,
+                                int offset,
+                                int[] ids,
+                                int[] weights,
+                                OffHeapArray offHeapEntries) {
+        Arrays.sort(row, 0, length);
+        
+        for (int i = 0; i < length; i++) {
+            int id = (int) row[i];
+            int weight = Integer.MAX_VALUE - (int) (row[i] >>> 32);
+            
+            if (ids != null) {
+                ids[offset + i] = id;
+                weights[offset + i] = weight;
+            } else {
+                offHeapEntries.setInt(2L * (offset + i), id);
+                offHeapEntries.setInt(2L * (offset + i) + 1, weight);
+            }
+        }
+    }
+}
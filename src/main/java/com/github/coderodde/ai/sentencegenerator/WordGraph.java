@@ -0,0 +1,68 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only view of a word graph. Words are identified by dense integer
+ * IDs {@code 0, 1, ..., getNumberOfDistinctWords() - 1} assigned in the
+ * alphabetical order of the words. An arc from word {@code u} to word
+ * {@code v} means that {@code v} followed {@code u} in some sentence, and its
+ * weight is the number of such occurrences.
+ */
+interface WordGraph {
+    
+    int getNumberOfSentences();
+    
+    int getNumberOfWords();
+    
+    int getNumberOfDistinctWords();
+    
+    String getWord(int wordId);
+    
+    /**
+     * Returns the ID of {@code word}, or {@code -1} if there is no such word.
+     */
+    int getWordId(String word);
+    
+    int getNumberOfChildren(int wordId);
+    
+    int getChild(int wordId, int index);
+    
+    /**
+     * Returns the weight of the arc from {@code wordId} to its
+     * {@code index}th child.
+     */
+    int getChildWeight(int wordId, int index);
+    
+    long getTotalChildWeight(int wordId);
+    
+    int getNumberOfParents(int wordId);
+    
+    int getParent(int wordId, int index);
+    
+    /**
+     * Returns the weight of the arc from the {@code index}th parent of
+     * {@code wordId} to {@code wordId}.
+     */
+    int getParentWeight(int wordId, int index);
+    
+    long getTotalParentWeight(int wordId);
+    
+    /**
+     * Returns the number of sentences that start with {@code wordId}. The
+     * count is exact even when arcs were pruned or dropped.
+     */
+    int getNumberOfStarts(int wordId);
+    
+    /**
+     * Samples a parent of {@code wordId} proportionally to the arc weights.
+     * Returns {@code -1} if the word has no parents.
+     */
+    int sampleParent(int wordId, RandomGenerator random);
+    
+    /**
+     * Samples a child of {@code wordId} proportionally to the arc weights.
+     * Returns {@code -1} if the word has no children.
+     */
+    int sampleChild(int wordId, RandomGenerator random);
+}
@@ -1,82 +1,508 @@
 package com.github.coderodde.ai.sentencegenerator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.random.RandomGenerator;
 
 final class WordGraphBuilder {
     
-    public static final class Data {
+    public static final class Data implements WordGraph {
         public final List<DirectedWordGraphNode> graph;
         public final Map<String, DirectedWordGraphNode> graphMap;
         public final int numberOfSentences;
         public final int numberOfDistinctWords;
         public final int numberOfWords;
+        private final int[] numbersOfStarts;
         
         private Data(List<DirectedWordGraphNode> graph,
                      Map<String, DirectedWordGraphNode> graphMap,
+                     int[] numbersOfStarts,
                      int numberOfSentences,
                      int numberOfDistinctWords,
                      int numberOfWords) {
             
             this.graph = graph;
             this.graphMap = graphMap;
+            this.numbersOfStarts = numbersOfStarts;
             this.numberOfSentences = numberOfSentences;
             this.numberOfDistinctWords = numberOfDistinctWords;
             this.numberOfWords = numberOfWords;
         }
+        
+        @Override
+        public int getNumberOfSentences() {
+            return numberOfSentences;
+        }
+        
+        @Override
+        public int getNumberOfWords() {
+            return numberOfWords;
+        }
+        
+        @Override
+        public int getNumberOfDistinctWords() {
+            return numberOfDistinctWords;
+        }
+        
+        @Override
+        public String getWord(int wordId) {
+            return graph.get(wordId).getWord();
+        }
+        
+        @Override
+        public int getWordId(String word) {
+            DirectedWordGraphNode node = graphMap.get(word);
+            return node == null ? -1 : node.getId();
+        }
+        
+        @Override
+        public int getNumberOfChildren(int wordId) {
+            return graph.get(wordId)
+                        .getFrozenChildProbabilityDistribution()
+                        .size();
+        }
+        
+        @Override
+        public int getChild(int wordId, int index) {
+            return graph.get(wordId)
+                        .getFrozenChildProbabilityDistribution()
+                        .getElement(index)
+                        .getId();
+        }
+        
+        @Override
+        public int getChildWeight(int wordId, int index) {
+            return (int) graph.get(wordId)
+                              .getFrozenChildProbabilityDistribution()
+                              .getWeight(index);
+        }
+        
+        @Override
+        public long getTotalChildWeight(int wordId) {
+            return (long) graph.get(wordId)
+                               .getFrozenChildProbabilityDistribution()
+                               .getTotalWeight();
+        }
+        
+        @Override
+        public int getNumberOfParents(int wordId) {
+            return graph.get(wordId)
+                        .getFrozenParentProbabilityDistribution()
+                        .size();
+        }
+        
+        @Override
+        public int getParent(int wordId, int index) {
+            return graph.get(wordId)
+                        .getFrozenParentProbabilityDistribution()
+                        .getElement(index)
+                        .getId();
+        }
+        
+        @Override
+        public int getParentWeight(int wordId, int index) {
+            return (int) graph.get(wordId)
+                              .getFrozenParentProbabilityDistribution()
+                              .getWeight(index);
+        }
+        
+        @Override
+        public long getTotalParentWeight(int wordId) {
+            return (long) graph.get(wordId)
+                               .getFrozenParentProbabilityDistribution()
+                               .getTotalWeight();
+        }
+        
+        @Override
+        public int getNumberOfStarts(int wordId) {
+            return numbersOfStarts[wordId];
+        }
+        
+        @Override
+        public int sampleParent(int wordId, RandomGenerator random) {
+            DirectedWordGraphNode parent = 
+                    graph.get(wordId).sampleParent(random);
+            
+            return parent == null ? -1 : parent.getId();
+        }
+        
+        @Override
+        public int sampleChild(int wordId, RandomGenerator random) {
+            DirectedWordGraphNode child = 
+                    graph.get(wordId).sampleChild(random);
+            
+            return child == null ? -1 : child.getId();
+        }
+    }
+    
+    private static final int INITIAL_NUMBER_OF_WORD_COUNTS = 16;
+    
+    // The bigram counts are keyed by (parent ID << 32) | child ID, where
+    // the IDs come from the symbol table in the order of first appearance.
+    private SymbolTable symbolTable;
+    private LongIntHashMap counts;
+    private int[] wordCounts;
+    private int[] startCounts;
+    private boolean built;
+    private int numberOfSentences;
+    private int numberOfWords;
+    
+    public WordGraphBuilder() {
+        this(new SymbolTable(), 
+             new LongIntHashMap(), 
+             new int[INITIAL_NUMBER_OF_WORD_COUNTS], 
+             new int[INITIAL_NUMBER_OF_WORD_COUNTS], 
+             0, 
+             0);
+    }
+    
+    // The word and start counts are indexed by the symbol IDs, have the same
+    // length and may be longer than the symbol table.
+    WordGraphBuilder(SymbolTable symbolTable,
+                     LongIntHashMap counts,
+                     int[] wordCounts,
+                     int[] startCounts,
+                     int numberOfSentences,
+                     int numberOfWords) {
+        this.symbolTable = symbolTable;
+        this.counts = counts;
+        this.wordCounts = wordCounts;
+        this.startCounts = startCounts;
+        this.numberOfSentences = numberOfSentences;
+        this.numberOfWords = numberOfWords;
     }
     
     public static Data buildGraph(List<List<String>> sentenceList) {
-        Map<String, DirectedWordGraphNode> nodeMap = new HashMap<>();
-        List<DirectedWordGraphNode> graph = new ArrayList<>();
+        WordGraphBuilder builder = new WordGraphBuilder();
+        builder.addSentences(sentenceList);
+        return builder.build();
+    }
+    
+    public static CompactWordGraph 
+        buildCompactGraph(List<List<String>> sentenceList) {
+        WordGraphBuilder builder = new WordGraphBuilder();
+        builder.addSentences(sentenceList);
+        return builder.buildCompact();
+    }
+    
+    public void addSentences(List<List<String>> sentenceList) {
+        for (List<String> sentence : sentenceList) {
+            addSentence(sentence);
+        }
+    }
+    
+    public void addSentence(List<String> sentence) {
+        numberOfSentences++;
+        numberOfWords += sentence.size();
+        long previousWordId = -1L;
         
-        int numberOfDistinctWords = 0;
-        int numberOfWords = 0;
+        for (String word : sentence) {
+            int wordId = symbolTable.getOrAddId(word);
+            addWordCount(wordId, 1);
+            
+            if (previousWordId != -1L) {
+                counts.add((previousWordId << 32) | wordId, 1);
+            } else {
+                startCounts[wordId]++;
+            }
+            
+            previousWordId = wordId;
+        }
+    }
+    
+    public void merge(WordGraphBuilder other) {
+        numberOfSentences += other.numberOfSentences;
+        numberOfWords += other.numberOfWords;
         
-        for (List<String> sentence : sentenceList) {
-            numberOfWords += sentence.size();
+        int[] otherToThisIds = new int[other.symbolTable.size()];
+        
+        for (int otherId = 0; otherId < otherToThisIds.length; otherId++) {
+            otherToThisIds[otherId] = 
+                    symbolTable.getOrAddId(
+                            other.symbolTable.getSymbol(otherId));
+            
+            addWordCount(otherToThisIds[otherId], other.wordCounts[otherId]);
+            startCounts[otherToThisIds[otherId]] += 
+                    other.startCounts[otherId];
+        }
+        
+        other.counts.forEach((key, count) -> {
+            long parentId = otherToThisIds[(int) (key >>> 32)];
+            long childId = otherToThisIds[(int) key];
+            counts.add((parentId << 32) | childId, count);
+        });
+    }
+    
+    public int getNumberOfSentences() {
+        return numberOfSentences;
+    }
+    
+    public int getNumberOfDistinctWords() {
+        return symbolTable.size();
+    }
+    
+    /**
+     * Maps the words occurring fewer than {@code minimumWordCount} times, 
+     * and all but the {@code maximumNumberOfWords} most frequent ones, to 
+     * {@link PruningSummary#UNKNOWN_WORD}, and then drops the arcs with a 
+     * count below {@code minimumArcCount}. The sentence terminators are 
+     * always kept. Must be called before the first build.
+     */
+    public PruningSummary prune(int minimumWordCount, 
+                                int minimumArcCount, 
+                                int maximumNumberOfWords) {
+        if (built) {
+            throw new IllegalStateException(
+                    "Cannot prune a builder that has already built a graph.");
+        }
+        
+        int numberOfDistinctWords = symbolTable.size();
+        Integer[] candidates = new Integer[numberOfDistinctWords];
+        int numberOfCandidates = 0;
+        boolean[] kept = new boolean[numberOfDistinctWords];
+        int numberOfKeptWords = 0;
+        
+        for (int id = 0; id < numberOfDistinctWords; id++) {
+            if (isTerminator(symbolTable.getSymbol(id))) {
+                kept[id] = true;
+                numberOfKeptWords++;
+            } else if (wordCounts[id] >= minimumWordCount) {
+                candidates[numberOfCandidates++] = id;
+            }
+        }
+        
+        // The most frequent words first, ties broken alphabetically.
+        Arrays.sort(candidates, 0, numberOfCandidates, (id1, id2) -> {
+            int cmp = Integer.compare(wordCounts[id2], wordCounts[id1]);
             
-            for (String word : sentence) {
-                if (!nodeMap.containsKey(word)) {
-                    numberOfDistinctWords++;
-                    
-                    DirectedWordGraphNode directedWordGraphNode = 
-                            new DirectedWordGraphNode(word);
-                    
-                    nodeMap.put(word, directedWordGraphNode);
-                    graph.add(directedWordGraphNode);
-                }
+            return cmp != 0 ? 
+                    cmp : 
+                    symbolTable.getSymbol(id1)
+                               .compareTo(symbolTable.getSymbol(id2));
+        });
+        
+        for (int i = 0; 
+                i < Math.min(numberOfCandidates, maximumNumberOfWords); 
+                i++) {
+            kept[candidates[i]] = true;
+            numberOfKeptWords++;
+        }
+        
+        SymbolTable prunedSymbolTable = new SymbolTable();
+        int[] oldToNewIds = new int[numberOfDistinctWords];
+        int numberOfPrunedWords = numberOfDistinctWords - numberOfKeptWords;
+        long numberOfPrunedOccurrences = 0L;
+        int unknownWordId = -1;
+        
+        for (int id = 0; id < numberOfDistinctWords; id++) {
+            if (kept[id]) {
+                oldToNewIds[id] = 
+                        prunedSymbolTable.getOrAddId(
+                                symbolTable.getSymbol(id));
             }
         }
         
-        for (List<String> sentence : sentenceList) {
-            if (sentence.isEmpty()) {
-                continue;
+        if (numberOfPrunedWords > 0) {
+            unknownWordId = 
+                    prunedSymbolTable.getOrAddId(PruningSummary.UNKNOWN_WORD);
+        }
+        
+        int[] prunedWordCounts = new int[prunedSymbolTable.size()];
+        int[] prunedStartCounts = new int[prunedSymbolTable.size()];
+        
+        for (int id = 0; id < numberOfDistinctWords; id++) {
+            if (!kept[id]) {
+                oldToNewIds[id] = unknownWordId;
+                numberOfPrunedOccurrences += wordCounts[id];
             }
             
-            for (int i = 0; i < sentence.size() - 1; i++) {
-                String word1 = sentence.get(i);
-                String word2 = sentence.get(i + 1);
-                
-                nodeMap.get(word2)
-                       .connectToParent(
-                               nodeMap.get(word1));
+            prunedWordCounts[oldToNewIds[id]] += wordCounts[id];
+            prunedStartCounts[oldToNewIds[id]] += startCounts[id];
+        }
+        
+        LongIntHashMap mappedCounts = new LongIntHashMap(counts.size());
+        
+        counts.forEach((key, count) -> {
+            long parentId = oldToNewIds[(int) (key >>> 32)];
+            long childId = oldToNewIds[(int) key];
+            mappedCounts.add((parentId << 32) | childId, count);
+        });
+        
+        LongIntHashMap prunedCounts = new LongIntHashMap(mappedCounts.size());
+        int[] numberOfPrunedChildArcs = new int[prunedSymbolTable.size()];
+        int[] numberOfPrunedParentArcs = new int[prunedSymbolTable.size()];
+        long[] numberOfPrunedArcOccurrences = new long[1];
+        
+        mappedCounts.forEach((key, count) -> {
+            if (count >= minimumArcCount) {
+                prunedCounts.put(key, count);
+            } else {
+                numberOfPrunedChildArcs[(int) (key >>> 32)]++;
+                numberOfPrunedParentArcs[(int) key]++;
+                numberOfPrunedArcOccurrences[0] += count;
             }
+        });
+        
+        symbolTable = prunedSymbolTable;
+        counts = prunedCounts;
+        wordCounts = prunedWordCounts;
+        startCounts = prunedStartCounts;
+        
+        return new PruningSummary(
+                numberOfPrunedWords,
+                numberOfPrunedOccurrences,
+                mappedCounts.size() - prunedCounts.size(),
+                numberOfPrunedArcOccurrences[0],
+                prunedSymbolTable,
+                numberOfPrunedChildArcs,
+                numberOfPrunedParentArcs);
+    }
+    
+    public Data build() {
+        List<DirectedWordGraphNode> graph = 
+                new ArrayList<>(symbolTable.size());
+        
+        for (int id = 0; id < symbolTable.size(); id++) {
+            graph.add(new DirectedWordGraphNode(symbolTable.getSymbol(id)));
         }
         
-        for (DirectedWordGraphNode node : nodeMap.values()) {
+        counts.forEach((key, count) -> {
+            graph.get((int) key)
+                 .connectToParent(graph.get((int) (key >>> 32)), count);
+        });
+        
+        for (DirectedWordGraphNode node : graph) {
             node.computeProbabilityDistribution();
+            node.freeze();
+        }
+        
+        built = true;
+        sortAndAssignIds(graph);
+        int[] numbersOfStarts = new int[graph.size()];
+        
+        for (DirectedWordGraphNode node : graph) {
+            numbersOfStarts[node.getId()] = 
+                    startCounts[symbolTable.getId(node.getWord())];
         }
         
         return new Data(graph,
                         getGraphMap(graph),
-                        sentenceList.size(),
-                        numberOfDistinctWords, 
+                        numbersOfStarts,
+                        numberOfSentences,
+                        graph.size(), 
                         numberOfWords);
     }
+    
+    public CompactWordGraph buildCompact() {
+        int numberOfDistinctWords = symbolTable.size();
+        String[] words = new String[numberOfDistinctWords];
+        
+        for (int i = 0; i < numberOfDistinctWords; i++) {
+            words[i] = symbolTable.getSymbol(i);
+        }
+        
+        Arrays.sort(words);
+        int[] symbolIdToWordId = new int[numberOfDistinctWords];
+        int[] wordIdToSymbolId = new int[numberOfDistinctWords];
+        int[] numbersOfStarts = new int[numberOfDistinctWords];
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            wordIdToSymbolId[wordId] = symbolTable.getId(words[wordId]);
+            symbolIdToWordId[wordIdToSymbolId[wordId]] = wordId;
+            numbersOfStarts[wordId] = startCounts[wordIdToSymbolId[wordId]];
+        }
         
+        // Sorting the arcs by (word ID, neighbour ID) yields the rows in 
+        // order, each sorted by the neighbour ID.
+        long[] childArcs = new long[counts.size()];
+        long[] parentArcs = new long[counts.size()];
+        int[] index = new int[1];
+        
+        counts.forEach((key, count) -> {
+            long parentId = symbolIdToWordId[(int) (key >>> 32)];
+            long childId = symbolIdToWordId[(int) key];
+            childArcs[index[0]] = (parentId << 32) | childId;
+            parentArcs[index[0]] = (childId << 32) | parentId;
+            index[0]++;
+        });
+        
+        Arrays.sort(childArcs);
+        Arrays.sort(parentArcs);
+        
+        int[] childOffsets = new int[numberOfDistinctWords + 1];
+        int[] childIds = new int[childArcs.length];
+        int[] childWeights = new int[childArcs.length];
+        int[] parentOffsets = new int[numberOfDistinctWords + 1];
+        int[] parentIds = new int[parentArcs.length];
+        int[] parentWeights = new int[parentArcs.length];
+        
+        for (int i = 0; i < childArcs.length; i++) {
+            int parentId = (int) (childArcs[i] >>> 32);
+            int childId = (int) childArcs[i];
+            childOffsets[parentId + 1]++;
+            childIds[i] = childId;
+            childWeights[i] = getCount(wordIdToSymbolId, parentId, childId);
+            
+            childId = (int) (parentArcs[i] >>> 32);
+            parentId = (int) parentArcs[i];
+            parentOffsets[childId + 1]++;
+            parentIds[i] = parentId;
+            parentWeights[i] = getCount(wordIdToSymbolId, parentId, childId);
+        }
+        
+        for (int i = 0; i < numberOfDistinctWords; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+            parentOffsets[i + 1] += parentOffsets[i];
+        }
+        
+        return new CompactWordGraph(words,
+                                    childOffsets,
+                                    childIds,
+                                    childWeights,
+                                    parentOffsets,
+                                    parentIds,
+                                    parentWeights,
+                                    numbersOfStarts,
+                                    numberOfSentences,
+                                    numberOfWords);
+    }
+    
+    private void addWordCount(int wordId, int count) {
+        if (wordId == wordCounts.length) {
+            wordCounts = Arrays.copyOf(wordCounts, 2 * wordCounts.length);
+            startCounts = Arrays.copyOf(startCounts, wordCounts.length);
+        }
+        
+        wordCounts[wordId] += count;
+    }
+    
+    private static boolean isTerminator(String word) {
+        return switch (word) {
+            case ".", "?", "!" -> true;
+            default -> false;
+        };
+    }
+    
+    private int getCount(int[] wordIdToSymbolId, 
+                         int parentWordId, 
+                         int childWordId) {
+        long parentId = wordIdToSymbolId[parentWordId];
+        long childId = wordIdToSymbolId[childWordId];
+        return counts.get((parentId << 32) | childId);
+    }
+        
+    private static void sortAndAssignIds(List<DirectedWordGraphNode> graph) {
+        Collections.<DirectedWordGraphNode>sort(graph);
+        
+        for (int i = 0; i < graph.size(); i++) {
+            graph.get(i).setId(i);
+        }
+    }
+    
     private static Map<String, DirectedWordGraphNode> 
         getGraphMap(List<DirectedWordGraphNode> graph) {
         Map<String, DirectedWordGraphNode> graphMap = 
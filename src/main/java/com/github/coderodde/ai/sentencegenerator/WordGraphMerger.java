@@ -0,0 +1,370 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges new sentences into an existing word graph, producing a new
+ * {@link CompactWordGraph} and leaving the input graph untouched. When the
+ * input graph keeps its alias tables in flat rows, as an
+ * {@link AliasWordGraph} does, only the rows that received new arcs are
+ * re-sorted and get new alias tables; all other rows are copied together
+ * with their tables. The rows of any other graph, such as the object graph
+ * of {@link WordGraphBuilder.Data}, are all sorted by the neighbour ID and
+ * rebuilt, so merging into such a graph costs a full rebuild.
+ */
+final class WordGraphMerger {
+    
+    private final WordGraph baseGraph;
+    private final AliasWordGraph aliasBaseGraph;
+    private final SymbolTable deltaSymbolTable = new SymbolTable();
+    private final LongIntHashMap deltaCounts = new LongIntHashMap();
+    private int[] deltaStartCounts = new int[16];
+    private int numberOfSentences;
+    private int numberOfWords;
+    
+    private String[] words;
+    private int[] baseToMergedIds;
+    private int[] mergedToBaseIds;
+    private int[] deltaToMergedIds;
+    private int[] mergedToDeltaIds;
+    private int numberOfRecomputedRows;
+    
+    // Scratch rows for building the alias tables.
+    private double[] rowWeights = new double[0];
+    private double[] rowProbabilities = new double[0];
+    private int[] rowAliases = new int[0];
+    
+    public WordGraphMerger(WordGraph baseGraph) {
+        this.baseGraph = baseGraph;
+        this.aliasBaseGraph =
+                baseGraph instanceof AliasWordGraph aliasWordGraph ?
+                aliasWordGraph :
+                null;
+    }
+    
+    public void addSentences(List<List<String>> sentenceList) {
+        for (List<String> sentence : sentenceList) {
+            addSentence(sentence);
+        }
+    }
+    
+    public void addSentence(List<String> sentence) {
+        numberOfSentences++;
+        numberOfWords += sentence.size();
+        int previousWordId = -1;
+        
+        for (String word : sentence) {
+            int wordId = deltaSymbolTable.getOrAddId(word);
+            
+            if (previousWordId != -1) {
+                deltaCounts.add(((long) previousWordId << 32) | wordId, 1);
+            } else {
+                if (wordId >= deltaStartCounts.length) {
+                    deltaStartCounts =
+                            Arrays.copyOf(deltaStartCounts,
+                                          Math.max(2 * deltaStartCounts.length,
+                                                   wordId + 1));
+                }
+                
+                deltaStartCounts[wordId]++;
+            }
+            
+            previousWordId = wordId;
+        }
+    }
+    
+    public int getNumberOfRecomputedRows() {
+        return numberOfRecomputedRows;
+    }
+    
+    public CompactWordGraph merge() {
+        mergeVocabularies();
+        
+        long[] childArcs = new long[deltaCounts.size()];
+        long[] parentArcs = new long[deltaCounts.size()];
+        int[] index = new int[1];
+        
+        // Both arc lists are keyed by the row word ID in the upper half and
+        // by the neighbour word ID in the lower half.
+        deltaCounts.forEach((key, count) -> {
+            long parentId = deltaToMergedIds[(int) (key >>> 32)];
+            long childId = deltaToMergedIds[(int) key];
+            childArcs[index[0]] = (parentId << 32) | childId;
+            parentArcs[index[0]] = (childId << 32) | parentId;
+            index[0]++;
+        });
+        
+        Arrays.sort(childArcs);
+        Arrays.sort(parentArcs);
+        numberOfRecomputedRows = 0;
+        
+        Rows childRows = mergeRows(childArcs, true);
+        Rows parentRows = mergeRows(parentArcs, false);
+        int[] numbersOfStarts = new int[words.length];
+        
+        for (int mergedId = 0; mergedId < words.length; mergedId++) {
+            int baseId = mergedToBaseIds[mergedId];
+            int deltaId = mergedToDeltaIds[mergedId];
+            
+            if (baseId != -1) {
+                numbersOfStarts[mergedId] = 
+                        baseGraph.getNumberOfStarts(baseId);
+            }
+            
+            // The start counts cover the delta IDs up to the last start.
+            if (deltaId != -1 && deltaId < deltaStartCounts.length) {
+                numbersOfStarts[mergedId] += deltaStartCounts[deltaId];
+            }
+        }
+        
+        return new CompactWordGraph(
+                words,
+                childRows.offsets,
+                childRows.ids,
+                childRows.weights,
+                childRows.probabilities,
+                childRows.aliases,
+                parentRows.offsets,
+                parentRows.ids,
+                parentRows.weights,
+                parentRows.probabilities,
+                parentRows.aliases,
+                numbersOfStarts,
+                baseGraph.getNumberOfSentences() + numberOfSentences,
+                baseGraph.getNumberOfWords() + numberOfWords);
+    }
+    
+    private static final class Rows {
+        int[] offsets;
+        int[] ids;
+        int[] weights;
+        double[] probabilities;
+        int[] aliases;
+    }
+    
+    private void mergeVocabularies() {
+        List<String> newWords = new ArrayList<>();
+        
+        for (int i = 0; i < deltaSymbolTable.size(); i++) {
+            String word = deltaSymbolTable.getSymbol(i);
+            
+            if (baseGraph.getWordId(word) == -1) {
+                newWords.add(word);
+            }
+        }
+        
+        newWords.sort(null);
+        
+        int numberOfBaseWords = baseGraph.getNumberOfDistinctWords();
+        words = new String[numberOfBaseWords + newWords.size()];
+        baseToMergedIds = new int[numberOfBaseWords];
+        mergedToBaseIds = new int[words.length];
+        int baseId = 0;
+        int newWordIndex = 0;
+        
+        for (int mergedId = 0; mergedId < words.length; mergedId++) {
+            if (newWordIndex == newWords.size()
+                    || (baseId < numberOfBaseWords
+                        && baseGraph.getWord(baseId)
+                                    .compareTo(newWords.get(newWordIndex))
+                            < 0)) {
+                
+                words[mergedId] = baseGraph.getWord(baseId);
+                baseToMergedIds[baseId] = mergedId;
+                mergedToBaseIds[mergedId] = baseId++;
+            } else {
+                words[mergedId] = newWords.get(newWordIndex++);
+                mergedToBaseIds[mergedId] = -1;
+            }
+        }
+        
+        deltaToMergedIds = new int[deltaSymbolTable.size()];
+        mergedToDeltaIds = new int[words.length];
+        Arrays.fill(mergedToDeltaIds, -1);
+        
+        for (int i = 0; i < deltaSymbolTable.size(); i++) {
+            deltaToMergedIds[i] = 
+                    Arrays.binarySearch(words, deltaSymbolTable.getSymbol(i));
+            
+            mergedToDeltaIds[deltaToMergedIds[i]] = i;
+        }
+    }
+    
+    private Rows mergeRows(long[] deltaArcs, boolean children) {
+        Rows rows = new Rows();
+        rows.offsets = new int[words.length + 1];
+        int[] deltaOffsets = new int[words.length + 1];
+        
+        for (long arc : deltaArcs) {
+            deltaOffsets[(int) (arc >>> 32) + 1]++;
+        }
+        
+        for (int i = 0; i < words.length; i++) {
+            deltaOffsets[i + 1] += deltaOffsets[i];
+        }
+        
+        // Upper bound: the base arcs plus every delta arc as a new one.
+        int capacity = deltaArcs.length;
+        
+        for (int baseId = 0;
+                baseId < baseGraph.getNumberOfDistinctWords();
+                baseId++) {
+            capacity += getRowLength(baseId, children);
+        }
+        
+        rows.ids = new int[capacity];
+        rows.weights = new int[capacity];
+        rows.probabilities = new double[capacity];
+        rows.aliases = new int[capacity];
+        
+        long[] row = new long[0];
+        int size = 0;
+        
+        for (int mergedId = 0; mergedId < words.length; mergedId++) {
+            int baseId = mergedToBaseIds[mergedId];
+            int baseRowLength =
+                    baseId == -1 ? 0 : getRowLength(baseId, children);
+            
+            int deltaFromIndex = deltaOffsets[mergedId];
+            int deltaToIndex = deltaOffsets[mergedId + 1];
+            
+            if (deltaFromIndex == deltaToIndex
+                    && (baseId == -1 || aliasBaseGraph != null)) {
+                // An unchanged row is copied in its order, so that its alias
+                // table, which refers to the positions in the row, stays
+                // valid. The row of a new word without arcs in this
+                // direction is empty.
+                for (int i = 0; i < baseRowLength; i++) {
+                    rows.ids[size + i] =
+                            baseToMergedIds[getNeighbour(baseId, i, children)];
+                    
+                    rows.weights[size + i] = getWeight(baseId, i, children);
+                }
+                
+                copyAliasTable(baseId, baseRowLength, children, rows, size);
+                size += baseRowLength;
+                rows.offsets[mergedId + 1] = size;
+                continue;
+            }
+            
+            int rowLength = baseRowLength + deltaToIndex - deltaFromIndex;
+            
+            if (row.length < rowLength) {
+                row = new long[rowLength];
+            }
+            
+            for (int i = 0; i < baseRowLength; i++) {
+                row[i] = ((long) baseToMergedIds[
+                                getNeighbour(baseId, i, children)] << 32)
+                       | getWeight(baseId, i, children);
+            }
+            
+            for (int i = deltaFromIndex; i < deltaToIndex; i++) {
+                int neighbourId = (int) deltaArcs[i];
+                int count =
+                        deltaCounts.get(children ?
+                                        getDeltaKey(mergedId, neighbourId) :
+                                        getDeltaKey(neighbourId, mergedId));
+                
+                row[baseRowLength + i - deltaFromIndex] =
+                        ((long) neighbourId << 32) | count;
+            }
+            
+            Arrays.sort(row, 0, rowLength);
+            int rowStart = size;
+            
+            for (int i = 0; i < rowLength; i++) {
+                int neighbourId = (int) (row[i] >>> 32);
+                int weight = (int) row[i];
+                
+                if (size > rowStart && rows.ids[size - 1] == neighbourId) {
+                    rows.weights[size - 1] += weight;
+                } else {
+                    rows.ids[size] = neighbourId;
+                    rows.weights[size] = weight;
+                    size++;
+                }
+            }
+            
+            buildAliasTable(rows, rowStart, size - rowStart);
+            
+            rows.offsets[mergedId + 1] = size;
+            numberOfRecomputedRows++;
+        }
+        
+        rows.ids = Arrays.copyOf(rows.ids, size);
+        rows.weights = Arrays.copyOf(rows.weights, size);
+        rows.probabilities = Arrays.copyOf(rows.probabilities, size);
+        rows.aliases = Arrays.copyOf(rows.aliases, size);
+        return rows;
+    }
+    
+    private long getDeltaKey(int parentMergedId, int childMergedId) {
+        return ((long) mergedToDeltaIds[parentMergedId] << 32) 
+             | mergedToDeltaIds[childMergedId];
+    }
+    
+    private void copyAliasTable(int baseId,
+                                int rowLength,
+                                boolean children,
+                                Rows rows,
+                                int fromIndex) {
+        for (int i = 0; i < rowLength; i++) {
+            rows.probabilities[fromIndex + i] =
+                    children ?
+                    aliasBaseGraph.getChildProbability(baseId, i) :
+                    aliasBaseGraph.getParentProbability(baseId, i);
+            
+            rows.aliases[fromIndex + i] =
+                    children ?
+                    aliasBaseGraph.getChildAlias(baseId, i) :
+                    aliasBaseGraph.getParentAlias(baseId, i);
+        }
+    }
+    
+    private void buildAliasTable(Rows rows, int fromIndex, int rowLength) {
+        if (rowWeights.length < rowLength) {
+            rowWeights = new double[rowLength];
+            rowProbabilities = new double[rowLength];
+            rowAliases = new int[rowLength];
+        }
+        
+        for (int i = 0; i < rowLength; i++) {
+            rowWeights[i] = rows.weights[fromIndex + i];
+        }
+        
+        AliasProbabilityDistribution.buildAliasTable(rowWeights,
+                                                     0,
+                                                     rowLength,
+                                                     rowProbabilities,
+                                                     rowAliases);
+        
+        System.arraycopy(rowProbabilities,
+                         0,
+                         rows.probabilities,
+                         fromIndex,
+                         rowLength);
+        
+        System.arraycopy(rowAliases, 0, rows.aliases, fromIndex, rowLength);
+    }
+    
+    private int getRowLength(int baseId, boolean children) {
+        return children ?
+               baseGraph.getNumberOfChildren(baseId) :
+               baseGraph.getNumberOfParents(baseId);
+    }
+    
+    private int getNeighbour(int baseId, int index, boolean children) {
+        return children ?
+               baseGraph.getChild(baseId, index) :
+               baseGraph.getParent(baseId, index);
+    }
+    
+    private int getWeight(int baseId, int index, boolean children) {
+        return children ?
+               baseGraph.getChildWeight(baseId, index) :
+               baseGraph.getParentWeight(baseId, index);
+    }
+}
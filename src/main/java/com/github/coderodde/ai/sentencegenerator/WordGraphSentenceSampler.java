@@ -0,0 +1,59 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples sentences by walking a word graph backwards from the full stop.
+ */
+final class WordGraphSentenceSampler implements SentenceSampler {
+    
+    private static final String END_OF_SENTENCE = ".";
+    
+    private final WordGraph graph;
+    
+    public WordGraphSentenceSampler(WordGraph graph) {
+        this.graph = graph;
+    }
+    
+    @Override
+    public List<String> sampleSentence(int maximumSentenceLength,
+                                       RandomGenerator random) {
+        int wordId = graph.getWordId(END_OF_SENTENCE);
+        
+        if (wordId == -1) {
+            throw new IllegalStateException(
+                    "No sentence ends with \"" + END_OF_SENTENCE + "\".");
+        }
+        
+        List<String> path = new ArrayList<>();
+        path.add(graph.getWord(wordId));
+        int currentSentenceLength = 1;
+        
+        while (currentSentenceLength < maximumSentenceLength) {
+            SampleElementEvent event = new SampleElementEvent();
+            event.begin();
+            int parentId = graph.sampleParent(wordId, random);
+            
+            if (event.shouldCommit()) {
+                event.wordId = wordId;
+                event.sampledWordId = parentId;
+                event.commit();
+            }
+            
+            wordId = parentId;
+            
+            if (wordId == -1) {
+                break;
+            }
+            
+            path.add(graph.getWord(wordId));
+            currentSentenceLength++;
+        }
+        
+        Collections.<String>reverse(path);
+        return path;
+    }
+}
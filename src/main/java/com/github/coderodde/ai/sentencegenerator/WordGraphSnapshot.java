@@ -0,0 +1,505 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads word graphs in a compact binary format. All values are
+ * big-endian:
+ *
+ * <pre>
+ * int      magic ("SGWG")
+ * int      format version
+ * int      number of sentences
+ * int      number of words
+ * int      number of distinct words, V
+ * int      number of child arcs, C
+ * int      number of parent arcs, P
+ * int[V+1] word byte offsets into the string table
+ * byte[]   string table: the UTF-8 encoded words in the ID order
+ * int[V]   numbers of sentences starting with each word
+ * int[V+1] child offsets
+ * int[C]   child IDs
+ * int[C]   child weights
+ * double[C] child alias probabilities
+ * int[C]   child aliases
+ * int[V+1] parent offsets
+ * int[P]   parent IDs
+ * int[P]   parent weights
+ * double[P] parent alias probabilities
+ * int[P]   parent aliases
+ * </pre>
+ *
+ * The arrays are read through memory mappings with bulk copies, so loading
+ * allocates one object per word and none per arc.
+ */
+final class WordGraphSnapshot {
+
+    static final int MAGIC = 0x53475747;
+    static final int VERSION = 2;
+    
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    
+    // Keep each mapping well below 2 GiB and divisible by 8.
+    private static final int MAXIMUM_MAPPING_SIZE = 1 << 30;
+    
+    /**
+     * Visits the arcs of one direction row by row in the word ID order.
+     */
+    interface ArcScanner {
+        void scan(RowConsumer consumer) throws IOException;
+    }
+    
+    interface RowConsumer {
+        
+        /**
+         * Accepts the first {@code length} neighbour IDs and weights of the 
+         * row of {@code wordId}. The arrays may be reused between calls.
+         */
+        void accept(int wordId, int[] ids, int[] weights, int length) 
+                throws IOException;
+    }
+    
+    public static void save(WordGraph graph, Path path) throws IOException {
+        int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+        String[] words = new String[numberOfDistinctWords];
+        int[] numbersOfStarts = new int[numberOfDistinctWords];
+        long numberOfChildArcs = 0;
+        long numberOfParentArcs = 0;
+        
+        for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+            words[wordId] = graph.getWord(wordId);
+            numbersOfStarts[wordId] = graph.getNumberOfStarts(wordId);
+            numberOfChildArcs += graph.getNumberOfChildren(wordId);
+            numberOfParentArcs += graph.getNumberOfParents(wordId);
+        }
+        
+        save(words,
+             numbersOfStarts,
+             graph.getNumberOfSentences(),
+             graph.getNumberOfWords(),
+             numberOfChildArcs,
+             getArcScanner(graph, true),
+             numberOfParentArcs,
+             getArcScanner(graph, false),
+             path);
+    }
+    
+    /**
+     * Saves a graph whose arcs are streamed by the scanners, so that the 
+     * arcs need not be in memory. Each scanner is run five times.
+     */
+    static void save(String[] words,
+                     int[] numbersOfStarts,
+                     int numberOfSentences,
+                     int numberOfWords,
+                     long numberOfChildArcs,
+                     ArcScanner childArcScanner,
+                     long numberOfParentArcs,
+                     ArcScanner parentArcScanner,
+                     Path path) throws IOException {
+        if (numberOfChildArcs > Integer.MAX_VALUE
+                || numberOfParentArcs > Integer.MAX_VALUE) {
+            throw new IOException(
+                    "Too many arcs for a word graph snapshot: "
+                            + Math.max(numberOfChildArcs, numberOfParentArcs)
+                            + ".");
+        }
+        
+        byte[][] encodedWords = new byte[words.length][];
+        
+        for (int wordId = 0; wordId < words.length; wordId++) {
+            encodedWords[wordId] =
+                    words[wordId].getBytes(StandardCharsets.UTF_8);
+        }
+        
+        try (DataOutputStream out =
+                new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(path),
+                                OUTPUT_BUFFER_SIZE))) {
+            
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numberOfSentences);
+            out.writeInt(numberOfWords);
+            out.writeInt(words.length);
+            out.writeInt((int) numberOfChildArcs);
+            out.writeInt((int) numberOfParentArcs);
+            
+            int byteOffset = 0;
+            out.writeInt(byteOffset);
+            
+            for (byte[] encodedWord : encodedWords) {
+                byteOffset += encodedWord.length;
+                out.writeInt(byteOffset);
+            }
+            
+            for (byte[] encodedWord : encodedWords) {
+                out.write(encodedWord);
+            }
+            
+            for (int numberOfStarts : numbersOfStarts) {
+                out.writeInt(numberOfStarts);
+            }
+            
+            writeArcs(childArcScanner, out);
+            writeArcs(parentArcScanner, out);
+        }
+    }
+    
+    public static CompactWordGraph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            Header header = Header.read(channel, path);
+            int numberOfSentences = header.numberOfSentences;
+            int numberOfWords = header.numberOfWords;
+            int numberOfDistinctWords = header.numberOfDistinctWords;
+            int numberOfChildArcs = header.numberOfChildArcs;
+            int numberOfParentArcs = header.numberOfParentArcs;
+            long position = Header.SIZE;
+            
+            int[] wordByteOffsets = new int[numberOfDistinctWords + 1];
+            position = readInts(channel, position, wordByteOffsets);
+            
+            byte[] stringTable = 
+                    new byte[wordByteOffsets[numberOfDistinctWords]];
+            position = readBytes(channel, position, stringTable);
+            
+            String[] words = new String[numberOfDistinctWords];
+            
+            for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+                words[wordId] =
+                        new String(stringTable,
+                                   wordByteOffsets[wordId],
+                                   wordByteOffsets[wordId + 1]
+                                           - wordByteOffsets[wordId],
+                                   StandardCharsets.UTF_8);
+            }
+            
+            int[] numbersOfStarts = new int[numberOfDistinctWords];
+            position = readInts(channel, position, numbersOfStarts);
+            
+            int[] childOffsets = new int[numberOfDistinctWords + 1];
+            int[] childIds = new int[numberOfChildArcs];
+            int[] childWeights = new int[numberOfChildArcs];
+            double[] childProbabilities = new double[numberOfChildArcs];
+            int[] childAliases = new int[numberOfChildArcs];
+            
+            position = readInts(channel, position, childOffsets);
+            position = readInts(channel, position, childIds);
+            position = readInts(channel, position, childWeights);
+            position = readDoubles(channel, position, childProbabilities);
+            position = readInts(channel, position, childAliases);
+            
+            int[] parentOffsets = new int[numberOfDistinctWords + 1];
+            int[] parentIds = new int[numberOfParentArcs];
+            int[] parentWeights = new int[numberOfParentArcs];
+            double[] parentProbabilities = new double[numberOfParentArcs];
+            int[] parentAliases = new int[numberOfParentArcs];
+            
+            position = readInts(channel, position, parentOffsets);
+            position = readInts(channel, position, parentIds);
+            position = readInts(channel, position, parentWeights);
+            position = readDoubles(channel, position, parentProbabilities);
+            readInts(channel, position, parentAliases);
+            
+            return new CompactWordGraph(words,
+                                        childOffsets,
+                                        childIds,
+                                        childWeights,
+                                        childProbabilities,
+                                        childAliases,
+                                        parentOffsets,
+                                        parentIds,
+                                        parentWeights,
+                                        parentProbabilities,
+                                        parentAliases,
+                                        numbersOfStarts,
+                                        numberOfSentences,
+                                        numberOfWords);
+        }
+    }
+    
+    /**
+     * Loads a snapshot straight into an {@link OffHeapWordGraph}. Every 
+     * section is copied from the file mapping into off-heap memory as is, 
+     * so the heap holds no array proportional to the graph at any time.
+     */
+    public static OffHeapWordGraph loadOffHeap(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            Header header = Header.read(channel, path);
+            int numberOfDistinctWords = header.numberOfDistinctWords;
+            long position = Header.SIZE;
+            
+            OffHeapArray wordByteOffsets = 
+                    OffHeapArray.ofInts(numberOfDistinctWords + 1L);
+            
+            position = wordByteOffsets.read(channel, position);
+            
+            OffHeapArray stringTable = 
+                    new OffHeapArray(
+                            wordByteOffsets.getInt(numberOfDistinctWords));
+            
+            position = stringTable.read(channel, position);
+            
+            OffHeapArray numbersOfStarts = 
+                    OffHeapArray.ofInts(numberOfDistinctWords);
+            
+            position = numbersOfStarts.read(channel, position);
+            
+            OffHeapArray[] childArrays = 
+                    newArcArrays(numberOfDistinctWords, 
+                                 header.numberOfChildArcs);
+            
+            for (OffHeapArray array : childArrays) {
+                position = array.read(channel, position);
+            }
+            
+            OffHeapArray[] parentArrays = 
+                    newArcArrays(numberOfDistinctWords, 
+                                 header.numberOfParentArcs);
+            
+            for (OffHeapArray array : parentArrays) {
+                position = array.read(channel, position);
+            }
+            
+            return new OffHeapWordGraph(
+                    numberOfDistinctWords,
+                    wordByteOffsets,
+                    stringTable,
+                    numbersOfStarts,
+                    newRows(childArrays, numberOfDistinctWords),
+                    newRows(parentArrays, numberOfDistinctWords),
+                    header.numberOfSentences,
+                    header.numberOfWords);
+        }
+    }
+    
+    private static final class Header {
+        
+        static final long SIZE = 7L * Integer.BYTES;
+        
+        int numberOfSentences;
+        int numberOfWords;
+        int numberOfDistinctWords;
+        int numberOfChildArcs;
+        int numberOfParentArcs;
+        
+        static Header read(FileChannel channel, Path path) 
+                throws IOException {
+            ByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0L, SIZE);
+            
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(
+                        "\"" + path + "\" is not a word graph snapshot.");
+            }
+            
+            int version = buffer.getInt();
+            
+            if (version != VERSION) {
+                throw new IOException(
+                        "Unsupported word graph snapshot version "
+                                + version
+                                + ", expected "
+                                + VERSION
+                                + ".");
+            }
+            
+            Header header = new Header();
+            header.numberOfSentences = buffer.getInt();
+            header.numberOfWords = buffer.getInt();
+            header.numberOfDistinctWords = buffer.getInt();
+            header.numberOfChildArcs = buffer.getInt();
+            header.numberOfParentArcs = buffer.getInt();
+            return header;
+        }
+    }
+    
+    // Offsets, IDs, weights, alias probabilities and aliases in the order 
+    // of the snapshot sections.
+    private static OffHeapArray[] newArcArrays(int numberOfDistinctWords,
+                                               int numberOfArcs) {
+        return new OffHeapArray[] {
+            OffHeapArray.ofInts(numberOfDistinctWords + 1L),
+            OffHeapArray.ofInts(numberOfArcs),
+            OffHeapArray.ofInts(numberOfArcs),
+            OffHeapArray.ofDoubles(numberOfArcs),
+            OffHeapArray.ofInts(numberOfArcs),
+        };
+    }
+    
+    private static OffHeapWordGraph.Rows newRows(OffHeapArray[] arrays,
+                                                 int numberOfDistinctWords) {
+        return new OffHeapWordGraph.Rows(arrays[0],
+                                         arrays[1],
+                                         arrays[2],
+                                         arrays[3],
+                                         arrays[4],
+                                         numberOfDistinctWords);
+    }
+    
+    private static void writeArcs(ArcScanner scanner,
+                                  DataOutputStream out) throws IOException {
+        int[] offset = new int[1];
+        int[] maximumRowLength = new int[1];
+        out.writeInt(offset[0]);
+        
+        scanner.scan((wordId, ids, weights, length) -> {
+            maximumRowLength[0] = Math.max(maximumRowLength[0], length);
+            offset[0] += length;
+            out.writeInt(offset[0]);
+        });
+        
+        scanner.scan((wordId, ids, weights, length) -> {
+            for (int i = 0; i < length; i++) {
+                out.writeInt(ids[i]);
+            }
+        });
+        
+        scanner.scan((wordId, ids, weights, length) -> {
+            for (int i = 0; i < length; i++) {
+                out.writeInt(weights[i]);
+            }
+        });
+        
+        // The alias tables are computed twice, once for the probability
+        // section and once for the alias section, to keep the writer
+        // streaming.
+        double[] rowWeights = new double[maximumRowLength[0]];
+        double[] rowProbabilities = new double[maximumRowLength[0]];
+        int[] rowAliases = new int[maximumRowLength[0]];
+        
+        for (int pass = 0; pass < 2; pass++) {
+            boolean probabilityPass = pass == 0;
+            
+            scanner.scan((wordId, ids, weights, length) -> {
+                for (int i = 0; i < length; i++) {
+                    rowWeights[i] = weights[i];
+                }
+                
+                AliasProbabilityDistribution.buildAliasTable(
+                        rowWeights,
+                        0,
+                        length,
+                        rowProbabilities,
+                        rowAliases);
+                
+                for (int i = 0; i < length; i++) {
+                    if (probabilityPass) {
+                        out.writeDouble(rowProbabilities[i]);
+                    } else {
+                        out.writeInt(rowAliases[i]);
+                    }
+                }
+            });
+        }
+    }
+    
+    static ArcScanner getArcScanner(WordGraph graph, boolean children) {
+        return consumer -> {
+            int numberOfDistinctWords = graph.getNumberOfDistinctWords();
+            int[] ids = new int[0];
+            int[] weights = new int[0];
+            
+            for (int wordId = 0; wordId < numberOfDistinctWords; wordId++) {
+                int rowLength = getRowLength(graph, wordId, children);
+                
+                if (ids.length < rowLength) {
+                    ids = new int[rowLength];
+                    weights = new int[rowLength];
+                }
+                
+                for (int i = 0; i < rowLength; i++) {
+                    ids[i] = children ?
+                             graph.getChild(wordId, i) :
+                             graph.getParent(wordId, i);
+                    
+                    weights[i] = children ?
+                                 graph.getChildWeight(wordId, i) :
+                                 graph.getParentWeight(wordId, i);
+                }
+                
+                consumer.accept(wordId, ids, weights, rowLength);
+            }
+        };
+    }
+    
+    private static int getRowLength(WordGraph graph,
+                                    int wordId,
+                                    boolean children) {
+        return children ?
+               graph.getNumberOfChildren(wordId) :
+               graph.getNumberOfParents(wordId);
+    }
+    
+    private static long readBytes(FileChannel channel,
+                                  long position,
+                                  byte[] array) throws IOException {
+        int index = 0;
+        
+        while (index < array.length) {
+            int length = Math.min(array.length - index, MAXIMUM_MAPPING_SIZE);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                   .get(array, index, length);
+            
+            index += length;
+            position += length;
+        }
+        
+        return position;
+    }
+    
+    private static long readInts(FileChannel channel,
+                                 long position,
+                                 int[] array) throws IOException {
+        int index = 0;
+        
+        while (index < array.length) {
+            int length = Math.min(array.length - index,
+                                  MAXIMUM_MAPPING_SIZE / Integer.BYTES);
+            
+            channel.map(FileChannel.MapMode.READ_ONLY,
+                        position,
+                        (long) length * Integer.BYTES)
+                   .asIntBuffer()
+                   .get(array, index, length);
+            
+            index += length;
+            position += (long) length * Integer.BYTES;
+        }
+        
+        return position;
+    }
+    
+    private static long readDoubles(FileChannel channel,
+                                    long position,
+                                    double[] array) throws IOException {
+        int index = 0;
+        
+        while (index < array.length) {
+            int length = Math.min(array.length - index,
+                                  MAXIMUM_MAPPING_SIZE / Double.BYTES);
+            
+            channel.map(FileChannel.MapMode.READ_ONLY,
+                        position,
+                        (long) length * Double.BYTES)
+                   .asDoubleBuffer()
+                   .get(array, index, length);
+            
+            index += length;
+            position += (long) length * Double.BYTES;
+        }
+        
+        return position;
+    }
+}
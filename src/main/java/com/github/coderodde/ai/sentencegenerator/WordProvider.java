@@ -5,39 +5,17 @@ import java.util.List;
 
 final class WordProvider {
     
+    private static final ThreadLocal<WordTokenizer> TOKENIZER = 
+            ThreadLocal.withInitial(WordTokenizer::new);
+    
     public static List<List<String>> getWords(List<String> sentences) {
         List<List<String>> returnList =
                 new ArrayList<>(sentences.size());
         
         for (String sentence : sentences) {
-            List<String> words = splitSentenceToWords(sentence);
-            List<String> wordList = new ArrayList<>();
-            boolean addedWord = false;
-            
-            for (String word : words) {
-                word = cleanWord(word.toLowerCase());
-                
-                if (word == null) {
-                    continue;
-                } 
-                
-                if (word.isBlank()) {
-                    continue;
-                }
-                
-                wordList.add(word);
-                addedWord = true;
-            }
+            List<String> wordList = getWords(sentence);
             
-            if (addedWord) {
-                char lastChar = sentence.charAt(sentence.length() - 1);
-
-                switch (lastChar) {
-                    case '.' -> wordList.add(".");
-                    case '?' -> wordList.add("?");
-                    case '!' -> wordList.add("!");
-                }
-
+            if (!wordList.isEmpty()) {
                 returnList.add(wordList);
             }
         }
@@ -45,7 +23,11 @@ final class WordProvider {
         return returnList;
     }
     
-    private static String cleanWord(String word) {
+    public static List<String> getWords(String sentence) {
+        return TOKENIZER.get().getWords(sentence);
+    }
+    
+    static String cleanWord(String word) {
         word = word.replace("“", "")
                    .replace("(", "")
                    .replace(")", "");
@@ -93,26 +75,4 @@ final class WordProvider {
         
         return true;
     }
-    
-    private static List<String> splitSentenceToWords(String sentence) {
-        sentence = sentence.trim();
-        String[] wordArray = sentence.split("\\s+|\\.|,|;|:|\"|\r|\n");
-        List<String> returnArray = 
-                new ArrayList<>(wordArray.length + 1);
-        
-        for (String word : wordArray) {
-            returnArray.add(word);
-        }
-        
-        char lastSentenceCharacter = 
-                sentence.charAt(sentence.length() - 1);
-        
-        switch (lastSentenceCharacter) {
-            case '.' -> returnArray.add(".");
-            case '?' -> returnArray.add("?");
-            case '!' -> returnArray.add("!");
-        }
-        
-        return returnArray;
-    }
 }
@@ -0,0 +1,144 @@
+package com.github.coderodde.ai.sentencegenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits a sentence into cleaned, lower-cased words in a single pass over its
+ * characters. A token is accumulated into a reusable buffer, and a string is
+ * created only when the token is accepted as a word.
+ * <p>
+ * The output is the same as that of splitting the trimmed sentence on the
+ * pattern {@code \s+|\.|,|;|:|"|\r|\n}, lower-casing each token, removing
+ * the characters {@code “}, {@code (} and {@code )}, stripping leading
+ * {@code ‘} characters, and keeping the non-empty tokens that consist of
+ * letters and digits only. Tokens with other non-ASCII characters, where
+ * lower-casing may depend on the context, and all tokens under locales with
+ * special lower-casing of ASCII letters, go through {@code String} methods.
+ */
+final class WordTokenizer {
+    
+    private static final char LEFT_DOUBLE_QUOTATION_MARK = '“';
+    private static final char LEFT_SINGLE_QUOTATION_MARK = '‘';
+    private static final int INITIAL_BUFFER_CAPACITY = 32;
+    
+    private char[] buffer = new char[INITIAL_BUFFER_CAPACITY];
+    
+    public List<String> getWords(String sentence) {
+        List<String> words = new ArrayList<>();
+        boolean asciiFastPath = hasPlainAsciiLowerCase(Locale.getDefault());
+        int startIndex = 0;
+        int endIndex = sentence.length();
+        
+        // Same as String.trim().
+        while (startIndex < endIndex && sentence.charAt(startIndex) <= ' ') {
+            startIndex++;
+        }
+        
+        while (endIndex > startIndex && sentence.charAt(endIndex - 1) <= ' ') {
+            endIndex--;
+        }
+        
+        int tokenStartIndex = startIndex;
+        
+        for (int i = startIndex; i <= endIndex; i++) {
+            if (i == endIndex || isSeparator(sentence.charAt(i))) {
+                if (i > tokenStartIndex) {
+                    if (asciiFastPath) {
+                        addWord(sentence, tokenStartIndex, i, words);
+                    } else {
+                        addWordSlow(sentence, tokenStartIndex, i, words);
+                    }
+                }
+                
+                tokenStartIndex = i + 1;
+            }
+        }
+        
+        if (!words.isEmpty()) {
+            switch (sentence.charAt(sentence.length() - 1)) {
+                case '.' -> words.add(".");
+                case '?' -> words.add("?");
+                case '!' -> words.add("!");
+            }
+        }
+        
+        return words;
+    }
+    
+    private void addWord(String sentence,
+                         int fromIndex,
+                         int toIndex,
+                         List<String> words) {
+        int length = 0;
+        
+        for (int i = fromIndex; i < toIndex; i++) {
+            char ch = sentence.charAt(i);
+            
+            if (ch < 0x80) {
+                if (ch == '(' || ch == ')') {
+                    continue;
+                }
+                
+                if (ch >= 'A' && ch <= 'Z') {
+                    ch += 'a' - 'A';
+                } else if (!(ch >= 'a' && ch <= 'z')
+                        && !(ch >= '0' && ch <= '9')) {
+                    return;
+                }
+            } else if (ch == LEFT_DOUBLE_QUOTATION_MARK) {
+                continue;
+            } else if (ch == LEFT_SINGLE_QUOTATION_MARK) {
+                if (length == 0) {
+                    continue;
+                }
+                
+                return;
+            } else {
+                addWordSlow(sentence, fromIndex, toIndex, words);
+                return;
+            }
+            
+            if (length == buffer.length) {
+                char[] newBuffer = new char[2 * buffer.length];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+            
+            buffer[length++] = ch;
+        }
+        
+        if (length > 0) {
+            words.add(new String(buffer, 0, length));
+        }
+    }
+    
+    private static void addWordSlow(String sentence,
+                                    int fromIndex,
+                                    int toIndex,
+                                    List<String> words) {
+        String word = WordProvider.cleanWord(
+                sentence.substring(fromIndex, toIndex).toLowerCase());
+        
+        if (word != null && !word.isBlank()) {
+            words.add(word);
+        }
+    }
+    
+    private static boolean isSeparator(char ch) {
+        return switch (ch) {
+            case ' ', '\t', '\n', '\u000B', '\f', '\r',
+                 '.', ',', ';', ':', '"' -> true;
+            default -> false;
+        };
+    }
+    
+    private static boolean hasPlainAsciiLowerCase(Locale locale) {
+        // Turkish and Azerbaijani map 'I' to the dotless 'ı'.
+        return switch (locale.getLanguage()) {
+            case "tr", "az" -> false;
+            default -> true;
+        };
+    }
+}